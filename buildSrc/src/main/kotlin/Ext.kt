@@ -10,7 +10,10 @@ object Ext {
     const val AppCompact = "androidx.appcompat:appcompat:1.6.1"
     const val material = "com.google.android.material:material:1.8.0"
     const val constraintLayout = "androidx.constraintlayout:constraintlayout:2.1.4"
+    const val recyclerView = "androidx.recyclerview:recyclerview:1.2.1"
+    const val viewPager = "androidx.viewpager:viewpager:1.0.0"
     const val junit = "junit:junit:4.13.2"
+    const val robolectric = "org.robolectric:robolectric:4.9"
     const val androidJunit = "androidx.test.ext:junit:1.1.5"
     const val espresso = "androidx.test.espresso:espresso-core:3.5.1"
 }
\ No newline at end of file
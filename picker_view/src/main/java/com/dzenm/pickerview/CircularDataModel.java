@@ -0,0 +1,182 @@
+package com.dzenm.pickerview;
+
+/**
+ * PickerView的数据模型, 通过头部偏移量(选中的位置)对适配器的数据实现循环索引,
+ * 滚动和选中都只改变偏移量, 不会移动或修改数据, 文本只在需要时从适配器获取
+ *
+ * @author dzenm
+ */
+final class CircularDataModel {
+
+    /**
+     * 数据适配器
+     */
+    private PickerAdapter mAdapter;
+
+    /**
+     * 数据的数量, 适配器数据改变时更新
+     */
+    private int mCount;
+
+    /**
+     * 头部偏移量, 即选中的item在数据中的位置
+     */
+    private int mHead;
+
+    /**
+     * 选中的item的id, 只有适配器的id稳定时才记录, id可以是任意值, 是否记录由{@link #hasSelectedId}表示
+     */
+    private long mSelectedId;
+    private boolean hasSelectedId;
+
+    /**
+     * 是否首尾相连
+     */
+    private boolean isLoop = true;
+
+    /**
+     * @param adapter 数据适配器
+     */
+    void setAdapter(PickerAdapter adapter) {
+        mAdapter = adapter;
+        mCount = adapter == null ? 0 : adapter.getCount();
+        mHead = mCount / 4;
+        updateSelectedId();
+    }
+
+    PickerAdapter getAdapter() {
+        return mAdapter;
+    }
+
+    /**
+     * 适配器的数据改变, 数据的id稳定时保持选中相同id的item, 否则保持选中的位置
+     */
+    void onDataChanged() {
+        mCount = mAdapter.getCount();
+        if (mAdapter.hasStableIds() && hasSelectedId) {
+            for (int i = 0; i < mCount; i++) {
+                if (mAdapter.getItemId(i) == mSelectedId) {
+                    mHead = i;
+                    return;
+                }
+            }
+        }
+        setSelectedIndex(mHead);
+    }
+
+    void setLoop(boolean loop) {
+        isLoop = loop;
+    }
+
+    boolean isLoop() {
+        return isLoop;
+    }
+
+    int size() {
+        return mCount;
+    }
+
+    boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /**
+     * @return 选中的item在数据中的位置
+     */
+    int getSelectedIndex() {
+        return mHead;
+    }
+
+    /**
+     * @param index 选中的item在数据中的位置, 循环时取模, 不循环时限制在数据范围内
+     */
+    void setSelectedIndex(int index) {
+        if (mCount == 0) {
+            mHead = 0;
+        } else if (isLoop) {
+            mHead = mod(index, mCount);
+        } else {
+            mHead = Math.max(0, Math.min(index, mCount - 1));
+        }
+        updateSelectedId();
+    }
+
+    /**
+     * @return 选中的item, 没有数据时为null
+     */
+    String getSelected() {
+        return mCount == 0 ? null : getText(mHead);
+    }
+
+    /**
+     * 移动选中位置
+     *
+     * @param step -1表示选中上一个, 1表示选中下一个
+     * @return 不循环时到达边界返回false, 此时不移动
+     */
+    boolean move(int step) {
+        if (mCount == 0) return false;
+        int target = mHead + step;
+        if (isLoop) {
+            mHead = mod(target, mCount);
+        } else if (target < 0 || target >= mCount) {
+            return false;
+        } else {
+            mHead = target;
+        }
+        updateSelectedId();
+        return true;
+    }
+
+    /**
+     * @return 选中位置上方可以显示的item数量
+     */
+    int getAboveCount() {
+        return isLoop ? mCount / 2 : mHead;
+    }
+
+    /**
+     * @return 选中位置下方可以显示的item数量
+     */
+    int getBelowCount() {
+        return isLoop ? mCount - 1 - mCount / 2 : mCount - 1 - mHead;
+    }
+
+    /**
+     * @param offset 相对于选中位置的偏移量, 负数表示上方, 正数表示下方
+     * @return 偏移位置在数据中的位置
+     */
+    int indexOf(int offset) {
+        int index = mHead + offset;
+        return isLoop ? mod(index, mCount) : index;
+    }
+
+    /**
+     * @param text 查找的文本
+     * @return 文本在数据中的位置, 没有找到返回-1
+     */
+    int indexOf(String text) {
+        for (int i = 0; i < mCount; i++) {
+            if (mAdapter.getItemText(i).equals(text)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param index item在数据中的位置
+     * @return item的文本, 绘制时由{@link TextLayoutCache}按位置缓存
+     */
+    String getText(int index) {
+        return mAdapter.getItemText(index);
+    }
+
+    private void updateSelectedId() {
+        hasSelectedId = mCount > 0 && mAdapter.hasStableIds();
+        mSelectedId = hasSelectedId ? mAdapter.getItemId(mHead) : 0;
+    }
+
+    private static int mod(int index, int size) {
+        int m = index % size;
+        return m < 0 ? m + size : m;
+    }
+}
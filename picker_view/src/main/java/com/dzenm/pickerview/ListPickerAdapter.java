@@ -0,0 +1,27 @@
+package com.dzenm.pickerview;
+
+import java.util.List;
+
+/**
+ * 由List创建的适配器, 数据拷贝到不可变数组中, 不会修改传入的List
+ *
+ * @author dzenm
+ */
+final class ListPickerAdapter extends PickerAdapter {
+
+    private final String[] mItems;
+
+    ListPickerAdapter(List<String> data) {
+        mItems = data == null ? new String[0] : data.toArray(new String[0]);
+    }
+
+    @Override
+    public int getCount() {
+        return mItems.length;
+    }
+
+    @Override
+    public String getItemText(int position) {
+        return mItems[position];
+    }
+}
@@ -0,0 +1,165 @@
+package com.dzenm.pickerview;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * PickerView数据的查找索引, 每次数据改变后创建一次. 文本完全匹配使用HashMap, 前缀匹配使用按文本排序的数组二分查找,
+ * 数值类型的item按数值排序, 可以查找最接近的数值
+ *
+ * @author dzenm
+ */
+final class LookupIndex {
+
+    /**
+     * 文本对应的第一个位置
+     */
+    private final HashMap<String, Integer> mExactPositions;
+
+    /**
+     * 按文本(忽略大小写)排序后的文本和对应的位置
+     */
+    private final String[] mSortedTexts;
+    private final int[] mSortedPositions;
+
+    /**
+     * 数值类型的item按数值排序后的数值和对应的位置
+     */
+    private final double[] mSortedNumbers;
+    private final int[] mNumberPositions;
+
+    private LookupIndex(HashMap<String, Integer> exactPositions, String[] sortedTexts, int[] sortedPositions,
+                        double[] sortedNumbers, int[] numberPositions) {
+        mExactPositions = exactPositions;
+        mSortedTexts = sortedTexts;
+        mSortedPositions = sortedPositions;
+        mSortedNumbers = sortedNumbers;
+        mNumberPositions = numberPositions;
+    }
+
+    /**
+     * 遍历适配器的所有数据创建索引
+     *
+     * @param adapter 数据适配器
+     * @return 查找索引
+     */
+    static LookupIndex build(PickerAdapter adapter) {
+        int count = adapter.getCount();
+        final String[] texts = new String[count];
+        final double[] numbers = new double[count];
+        HashMap<String, Integer> exactPositions = new HashMap<>(count * 4 / 3 + 1);
+        int numberCount = 0;
+        for (int i = 0; i < count; i++) {
+            String text = adapter.getItemText(i);
+            // 适配器返回null时按空文本处理
+            if (text == null) text = "";
+            texts[i] = text;
+            if (!exactPositions.containsKey(text)) exactPositions.put(text, i);
+            numbers[i] = parseNumber(text);
+            if (!Double.isNaN(numbers[i])) numberCount++;
+        }
+
+        Integer[] positions = new Integer[count];
+        Integer[] numberPositions = new Integer[numberCount];
+        for (int i = 0, n = 0; i < count; i++) {
+            positions[i] = i;
+            if (!Double.isNaN(numbers[i])) numberPositions[n++] = i;
+        }
+        Arrays.sort(positions, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return String.CASE_INSENSITIVE_ORDER.compare(texts[o1], texts[o2]);
+            }
+        });
+        Arrays.sort(numberPositions, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(numbers[o1], numbers[o2]);
+            }
+        });
+
+        String[] sortedTexts = new String[count];
+        int[] sortedPositions = new int[count];
+        for (int i = 0; i < count; i++) {
+            sortedPositions[i] = positions[i];
+            sortedTexts[i] = texts[positions[i]];
+        }
+        double[] sortedNumbers = new double[numberCount];
+        int[] sortedNumberPositions = new int[numberCount];
+        for (int i = 0; i < numberCount; i++) {
+            sortedNumberPositions[i] = numberPositions[i];
+            sortedNumbers[i] = numbers[numberPositions[i]];
+        }
+        return new LookupIndex(exactPositions, sortedTexts, sortedPositions, sortedNumbers, sortedNumberPositions);
+    }
+
+    /**
+     * @param text 完全匹配的文本
+     * @return 文本第一次出现的位置, 没有找到返回-1
+     */
+    int indexOf(String text) {
+        Integer position = mExactPositions.get(text);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * @param prefix 文本的前缀(忽略大小写)
+     * @return 按文本排序后第一个以prefix开头的item的位置, 没有找到返回-1
+     */
+    int indexOfPrefix(String prefix) {
+        // 二分查找第一个不小于prefix的文本
+        int low = 0, high = mSortedTexts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(mSortedTexts[mid], prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low < mSortedTexts.length
+                && mSortedTexts[low].regionMatches(true, 0, prefix, 0, prefix.length())) {
+            return mSortedPositions[low];
+        }
+        return -1;
+    }
+
+    /**
+     * @param value 查找的数值
+     * @return 数值最接近value的item的位置, 没有数值类型的item返回-1
+     */
+    int indexOfClosest(double value) {
+        int count = mSortedNumbers.length;
+        if (count == 0) return -1;
+        int index = Arrays.binarySearch(mSortedNumbers, value);
+        if (index >= 0) return mNumberPositions[index];
+        int insertion = -index - 1;
+        if (insertion == 0) return mNumberPositions[0];
+        if (insertion == count) return mNumberPositions[count - 1];
+        double lower = value - mSortedNumbers[insertion - 1], upper = mSortedNumbers[insertion] - value;
+        return mNumberPositions[lower <= upper ? insertion - 1 : insertion];
+    }
+
+    /**
+     * @param text item的文本
+     * @return 文本对应的数值, 不是数值时返回NaN
+     */
+    private static double parseNumber(String text) {
+        if (text == null) return Double.NaN;
+        int length = text.length();
+        if (length == 0) return Double.NaN;
+        boolean hasDigit = false, hasDot = false;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+            } else if (c == '.' && !hasDot) {
+                hasDot = true;
+            } else if (!((c == '-' || c == '+') && i == 0)) {
+                return Double.NaN;
+            }
+        }
+        return hasDigit ? Double.parseDouble(text) : Double.NaN;
+    }
+}
@@ -0,0 +1,113 @@
+package com.dzenm.pickerview;
+
+import java.util.Locale;
+
+/**
+ * 数字范围的适配器, 只有显示时才格式化文本, 适用于数量很大的数字选择
+ *
+ * @author dzenm
+ */
+public class NumberPickerAdapter extends PickerAdapter {
+
+    private final long mMin, mStep;
+    private final int mCount;
+    private final String mFormat;
+
+    /**
+     * @param min 最小值
+     * @param max 最大值(包含)
+     */
+    public NumberPickerAdapter(long min, long max) {
+        this(min, max, 1, null);
+    }
+
+    /**
+     * @param min    最小值
+     * @param max    最大值(包含)
+     * @param step   步长
+     * @param format 格式化的格式, 例如"%02d", 为null时直接显示数字
+     */
+    public NumberPickerAdapter(long min, long max, long step, String format) {
+        if (step <= 0 || max < min) {
+            throw new IllegalArgumentException("invalid range: " + min + ".." + max + ", step " + step);
+        }
+        mMin = min;
+        mStep = step;
+        mCount = (int) Math.min(Integer.MAX_VALUE, (max - min) / step + 1);
+        mFormat = format;
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public String getItemText(int position) {
+        long value = getValue(position);
+        return mFormat == null ? Long.toString(value) : String.format(Locale.getDefault(), mFormat, value);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getValue(position);
+    }
+
+    /**
+     * 没有格式化时直接计算以prefix开头的最小数值(负数为绝对值最小)的位置, 不需要遍历数据
+     */
+    @Override
+    public int getPositionForPrefix(String prefix) {
+        if (mFormat != null) return PREFIX_UNKNOWN;
+        boolean negative = prefix.startsWith("-");
+        String digits = negative ? prefix.substring(1) : prefix;
+        int length = digits.length();
+        // Long.toString不会产生前导0和"-0"
+        if (length == 0 || length > 18 || (digits.charAt(0) == '0' && (length > 1 || negative))) return -1;
+        for (int i = 0; i < length; i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') return -1;
+        }
+        long value = Long.parseLong(digits);
+        long limit = Math.max(Math.abs(mMin), Math.abs(getValue(mCount - 1)));
+        // 依次查找prefix后面补0位, 1位, 2位...数字的范围, 位数少的数值更小
+        for (long scale = 1; value <= limit / scale; scale *= 10) {
+            long low = value * scale, high = low + scale - 1;
+            int position = negative ? findLargest(-high, -low) : findSmallest(low, high);
+            if (position >= 0) return position;
+            if (value == 0 || scale > limit / 10) break;
+        }
+        return -1;
+    }
+
+    /**
+     * @return 数值在[low, high]之间的最小数值的位置, 没有时返回-1
+     */
+    private int findSmallest(long low, long high) {
+        long position = (Math.max(low, mMin) - mMin + mStep - 1) / mStep;
+        return position < mCount && getValue((int) position) <= high ? (int) position : -1;
+    }
+
+    /**
+     * @return 数值在[low, high]之间的最大数值的位置, 没有时返回-1
+     */
+    private int findLargest(long low, long high) {
+        long to = Math.min(high, getValue(mCount - 1));
+        if (to < mMin) return -1;
+        int position = (int) ((to - mMin) / mStep);
+        return getValue(position) >= low ? position : -1;
+    }
+
+    /**
+     * @param position item的位置
+     * @return item对应的数值
+     */
+    public long getValue(int position) {
+        return mMin + position * mStep;
+    }
+}
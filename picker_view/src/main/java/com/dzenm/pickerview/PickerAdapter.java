@@ -0,0 +1,71 @@
+package com.dzenm.pickerview;
+
+import android.database.DataSetObservable;
+import android.database.DataSetObserver;
+
+/**
+ * PickerView的数据适配器, PickerView只会获取可见的item文本, 不需要一次性创建所有数据
+ *
+ * @author dzenm
+ */
+public abstract class PickerAdapter {
+
+    /**
+     * {@link #getPositionForPrefix(String)}不能直接计算位置, PickerView在后台创建查找索引
+     */
+    public static final int PREFIX_UNKNOWN = -2;
+
+    private final DataSetObservable mDataSetObservable = new DataSetObservable();
+
+    /**
+     * @return item的数量
+     */
+    public abstract int getCount();
+
+    /**
+     * @param position item的位置
+     * @return 显示的文本
+     */
+    public abstract String getItemText(int position);
+
+    /**
+     * @return item的id是否稳定, 稳定时数据改变后会保持选中相同id的item
+     */
+    public boolean hasStableIds() {
+        return false;
+    }
+
+    /**
+     * @param position item的位置
+     * @return item的id
+     */
+    public long getItemId(int position) {
+        return position;
+    }
+
+    /**
+     * 键盘输入前缀时跳转的位置, 数据有规律时(例如数字范围)可以直接计算, 不需要遍历所有数据.
+     * 默认不能计算, 由PickerView在后台线程遍历{@link #getItemText(int)}创建查找索引, 此时getItemText需要可以在后台线程调用
+     *
+     * @param prefix 输入的前缀
+     * @return 以prefix开头的item的位置, 没有时返回-1, 不能直接计算时返回{@link #PREFIX_UNKNOWN}
+     */
+    public int getPositionForPrefix(String prefix) {
+        return PREFIX_UNKNOWN;
+    }
+
+    public void registerDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.registerObserver(observer);
+    }
+
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.unregisterObserver(observer);
+    }
+
+    /**
+     * 数据改变时通知PickerView刷新
+     */
+    public void notifyDataSetChanged() {
+        mDataSetObservable.notifyChanged();
+    }
+}
@@ -0,0 +1,223 @@
+package com.dzenm.pickerview;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.widget.LinearLayout;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * 多列联动的PickerView, 例如日期(年/月/日)和地区(省/市/区), 某一列选中改变时只重新计算它后面的列,
+ * 同一帧内的多次改变合并为一次计算
+ *
+ * @author dzenm
+ */
+public class PickerGroup extends LinearLayout {
+
+    /**
+     * 联动的数据源
+     */
+    private Source mSource;
+
+    /**
+     * 每一列的PickerView
+     */
+    private PickerView[] mColumns = new PickerView[0];
+
+    /**
+     * 每一列选中的位置
+     */
+    private int[] mSelected = new int[0];
+
+    /**
+     * 需要重新计算的第一列, 后面的列都需要重新计算, 等于列数时表示不需要计算
+     */
+    private int mDirtyColumn;
+
+    /**
+     * 是否已经提交了下一帧的计算
+     */
+    private boolean isUpdatePosted;
+
+    private OnSelectedChangedListener mOnSelectedChangedListener;
+
+    private final Runnable mUpdateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isUpdatePosted = false;
+            updateDirtyColumns();
+        }
+    };
+
+    private final PickerView.onSelectListener mColumnSelectListener = new PickerView.onSelectListener() {
+        @Override
+        public void onSelect(PickerView pickerView) {
+            for (int i = 0; i < mColumns.length; i++) {
+                if (mColumns[i] == pickerView) {
+                    onColumnSelected(i, pickerView.getSelectedIndex());
+                    break;
+                }
+            }
+        }
+    };
+
+    public PickerGroup(Context context) {
+        this(context, null);
+    }
+
+    public PickerGroup(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public PickerGroup(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        setOrientation(HORIZONTAL);
+    }
+
+    /**
+     * 设置联动的数据源, 按照列数创建PickerView, 每一列平分宽度
+     *
+     * @param source 联动的数据源
+     */
+    public void setSource(Source source) {
+        mSource = source;
+        int count = source == null ? 0 : source.getColumnCount();
+        if (count != mColumns.length) {
+            removeAllViews();
+            mColumns = new PickerView[count];
+            for (int i = 0; i < count; i++) {
+                PickerView column = new PickerView(getContext());
+                column.setIsLoop(false);
+                column.setGroupSelectListener(mColumnSelectListener);
+                addView(column, new LayoutParams(0, LayoutParams.MATCH_PARENT, 1));
+                mColumns[i] = column;
+            }
+        }
+        mSelected = new int[count];
+        // 数据源改变时所有的列都需要重新获取适配器
+        for (int i = 0; i < count; i++) {
+            mColumns[i].setAdapter(null);
+        }
+        markDirty(0);
+        updateDirtyColumns();
+    }
+
+    /**
+     * @param column 列的位置
+     * @return 对应列的PickerView, 可以设置自己的监听事件, 不会影响联动
+     */
+    public PickerView getColumn(int column) {
+        return mColumns[column];
+    }
+
+    /**
+     * @return 列数
+     */
+    public int getColumnCount() {
+        return mColumns.length;
+    }
+
+    /**
+     * @return 每一列选中的位置
+     */
+    public int[] getSelected() {
+        return Arrays.copyOf(mSelected, mSelected.length);
+    }
+
+    /**
+     * 设置某一列选中的位置, 后面的列在下一帧重新计算
+     *
+     * @param column 列的位置
+     * @param index  选中的位置
+     */
+    public void setSelected(int column, int index) {
+        mColumns[column].setSelected(index);
+        onColumnSelected(column, mColumns[column].getSelectedIndex());
+    }
+
+    public void setOnSelectedChangedListener(OnSelectedChangedListener listener) {
+        mOnSelectedChangedListener = listener;
+    }
+
+    private void onColumnSelected(int column, int index) {
+        if (mSelected[column] == index) return;
+        mSelected[column] = index;
+        markDirty(column + 1);
+        if (!isUpdatePosted) {
+            isUpdatePosted = true;
+            postOnAnimation(mUpdateRunnable);
+        }
+    }
+
+    private void markDirty(int column) {
+        mDirtyColumn = Math.min(mDirtyColumn, column);
+    }
+
+    /**
+     * 从第一个需要重新计算的列开始, 按顺序重新获取适配器, 后面的列依赖前面列的选中位置
+     */
+    private void updateDirtyColumns() {
+        if (mSource == null) return;
+        for (int i = mDirtyColumn; i < mColumns.length; i++) {
+            PickerView column = mColumns[i];
+            PickerAdapter adapter = mSource.getAdapter(i, mSelected);
+            if (adapter == column.getAdapter()) {
+                // 数据源复用了适配器, 只需要通知数据改变
+                if (adapter != null) adapter.notifyDataSetChanged();
+            } else {
+                // 尽量保持原来选中的位置
+                column.setAdapter(adapter);
+                column.setSelected(mSelected[i]);
+            }
+            mSelected[i] = column.getSelectedIndex();
+        }
+        mDirtyColumn = mColumns.length;
+        if (mOnSelectedChangedListener != null) {
+            mOnSelectedChangedListener.onSelectedChanged(this, getSelected());
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (isUpdatePosted) {
+            isUpdatePosted = false;
+            removeCallbacks(mUpdateRunnable);
+            updateDirtyColumns();
+        }
+    }
+
+    /**
+     * 多列联动的数据源
+     */
+    public interface Source {
+
+        /**
+         * @return 列数
+         */
+        int getColumnCount();
+
+        /**
+         * 获取某一列的适配器, 返回同一个适配器时只会通知数据改变, 不会重置选中的位置
+         *
+         * @param column   列的位置
+         * @param selected 每一列选中的位置, 只有前面的列(0到column - 1)是有效的
+         * @return 对应列的适配器
+         */
+        PickerAdapter getAdapter(int column, int[] selected);
+    }
+
+    /**
+     * 选中改变的监听事件
+     */
+    public interface OnSelectedChangedListener {
+
+        /**
+         * @param group    PickerGroup
+         * @param selected 每一列选中的位置
+         */
+        void onSelectedChanged(PickerGroup group, int[] selected);
+    }
+}
@@ -2,20 +2,30 @@ package com.dzenm.pickerview;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.database.DataSetObserver;
 import android.graphics.Canvas;
 import android.graphics.Paint;
-import android.os.Handler;
-import android.os.Message;
+import android.os.Bundle;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.KeyEvent;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.animation.DecelerateInterpolator;
+import android.widget.OverScroller;
 
 import androidx.annotation.Nullable;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * @author dzenm
@@ -39,24 +49,67 @@ public class  PickerView extends View {
     public static final float MARGIN_ALPHA = 3.0f;
 
     /**
-     * 自动回滚到中间的速度
+     * 自动回滚到中间的速度, 每10ms移动的像素
      */
     public static final float SPEED = 10;
 
     /**
-     * 是否可以循环滚动
+     * 选中回调的派发方式: 滑动停止后派发
      */
-    private boolean isLoop = true;
+    public static final int DISPATCH_ON_SETTLE = 0;
 
     /**
-     * 数据列表
+     * 选中回调的派发方式: 滑动过程中选中的item改变时派发, 两次派发的间隔不小于设置的时间
      */
-    private List<String> mDataList;
+    public static final int DISPATCH_ON_CHANGE = 1;
 
     /**
-     * 选中的位置，这个位置是mDataList的中心位置，一直不变
+     * 选中回调的派发方式: 滑动停止后经过设置的时间没有再次滑动才派发
      */
-    private int mCurrentSelectedIndex;
+    public static final int DISPATCH_DEBOUNCE = 2;
+
+    /**
+     * 回滚动画的最长时间
+     */
+    private static final int MAX_SETTLE_DURATION = 600;
+
+    /**
+     * 按键滚动一个item或一页的动画时间
+     */
+    private static final int KEY_SCROLL_DURATION = 150;
+
+    /**
+     * 输入前缀跳转时, 超过这个时间没有输入则重新开始输入前缀
+     */
+    private static final long TYPE_AHEAD_TIMEOUT = 1000;
+
+    /**
+     * 键盘输入前缀时在后台创建查找索引, 所有PickerView共用一个线程
+     */
+    private static final Executor LOOKUP_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "PickerView-lookup");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * 惯性滑动的最短和最长时间
+     */
+    private static final int MIN_FLING_DURATION = 200, MAX_FLING_DURATION = 2000;
+
+    /**
+     * 数据模型, 通过偏移量循环索引, 是否循环滚动也由它控制
+     */
+    private final CircularDataModel mDataModel = new CircularDataModel();
 
     /**
      * 选中的文字大小
@@ -108,34 +161,133 @@ public class  PickerView extends View {
      */
     private onSelectListener mSelectListener;
 
+    /**
+     * PickerGroup联动使用的监听事件, 和调用方设置的监听事件互不影响
+     */
+    private onSelectListener mGroupSelectListener;
+
     /**
      * 是否可以滚动
      */
     private boolean isScroll = true;
 
-    private Timer timer;
-    private MyTimerTask mTask;
+    /**
+     * 选中item的监听事件, 按照mDispatchMode派发
+     */
+    private OnItemSelectedListener mItemSelectedListener;
+
+    /**
+     * 选中回调的派发方式
+     */
+    private int mDispatchMode = DISPATCH_ON_SETTLE;
+
+    /**
+     * 限流或者防抖的时间间隔(ms)
+     */
+    private long mDispatchInterval;
+
+    /**
+     * 最后一次派发的时间和位置, 选中的位置没有改变时不重复派发
+     */
+    private long mLastDispatchTime;
+    private int mLastDispatchIndex = -1;
+
+    /**
+     * 键盘输入的前缀和最后一次输入的时间
+     */
+    private final StringBuilder mTypeAheadPrefix = new StringBuilder();
+    private long mLastTypeAheadTime;
+
+    private final Runnable mDispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            dispatchItemSelected();
+        }
+    };
+
+    /**
+     * 惯性滑动和回滚动画, 由Choreographer按屏幕刷新帧驱动, 不再使用额外的线程
+     */
+    private final OverScroller mScroller;
+
+    /**
+     * 计算手指抬起时的速度
+     */
+    private VelocityTracker mVelocityTracker;
+
+    /**
+     * 触发惯性滑动的最小速度和最大速度
+     */
+    private final int mMinimumVelocity, mMaximumVelocity;
+
+    /**
+     * 上一帧mScroller的位置
+     */
+    private int mLastScrollY;
+
+    /**
+     * 是否开启惯性滑动
+     */
+    private boolean isFlingEnabled = true;
+
+    /**
+     * 是否已经注册了下一帧的回调
+     */
+    private boolean isFramePosted;
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            isFramePosted = false;
+            computeScrollFrame();
+        }
+    };
 
     private Paint mSelectedPaint, mUnSelectedPaint;
 
-    @SuppressLint("HandlerLeak")
-    Handler mUpdateHandler = new Handler() {
+    /**
+     * 绘制文本时基线和截断文本的缓存
+     */
+    private final TextLayoutCache mTextLayoutCache = new TextLayoutCache();
+
+    /**
+     * 数据的查找索引, 第一次需要时创建, 数据改变后重新创建
+     */
+    private LookupIndex mLookupIndex;
+
+    /**
+     * 数据改变的次数, 数据改变后丢弃后台创建的查找索引
+     */
+    private int mLookupGeneration;
+    private boolean isLookupIndexBuilding;
+
+    /**
+     * {@link #setSelected(String)}是否使用查找索引
+     */
+    private boolean isLookupIndexEnabled = false;
+
+    /**
+     * 文本图集, 开启后item文本从预先绘制的Bitmap中缩放绘制
+     */
+    private final TextAtlas mTextAtlas = new TextAtlas();
+
+    /**
+     * 是否使用文本图集绘制
+     */
+    private boolean isTextAtlasEnabled = false;
+
+    /**
+     * 监听适配器的数据改变
+     */
+    private final DataSetObserver mDataSetObserver = new DataSetObserver() {
         @Override
-        public void handleMessage(Message msg) {
-            if (Math.abs(mMoveLen) < SPEED) {
-                mMoveLen = 0;
-                if (mTask != null) {
-                    mTask.cancel();
-                    mTask = null;
-                    performSelect();
-                }
-            } else {
-                // 这里mMoveLen / Math.abs(mMoveLen)是为了保有mMoveLen的正负号，以实现上滚或下滚
-                mMoveLen = mMoveLen - mMoveLen / Math.abs(mMoveLen) * SPEED;
-            }
+        public void onChanged() {
+            mDataModel.onDataChanged();
+            // 相同位置的内容可能已经改变, 需要重新派发
+            mLastDispatchIndex = -1;
+            clearTextCaches();
             invalidate();
         }
-
     };
 
     public PickerView(Context context) {
@@ -148,11 +300,14 @@ public class  PickerView extends View {
 
     public PickerView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
+        mScroller = new OverScroller(context, new DecelerateInterpolator(2f));
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        mMinimumVelocity = configuration.getScaledMinimumFlingVelocity();
+        mMaximumVelocity = configuration.getScaledMaximumFlingVelocity();
+        setFocusable(true);
     }
 
     {
-        timer = new Timer();
-        mDataList = new ArrayList<>();
 
         // 第一个paint(当前选中)
         mSelectedPaint = newPaint();
@@ -173,19 +328,98 @@ public class  PickerView extends View {
     }
 
     /**
-     * @param data 显示的List数据
+     * @param listener PickerGroup联动的监听事件
+     */
+    void setGroupSelectListener(onSelectListener listener) {
+        mGroupSelectListener = listener;
+    }
+
+    /**
+     * @param listener 选中item的监听事件, 按照{@link #setDispatchMode(int, long)}设置的方式派发
+     */
+    public void setOnItemSelectedListener(OnItemSelectedListener listener) {
+        mItemSelectedListener = listener;
+    }
+
+    /**
+     * 设置{@link OnItemSelectedListener}的派发方式
+     *
+     * @param mode     {@link #DISPATCH_ON_SETTLE}, {@link #DISPATCH_ON_CHANGE}或者{@link #DISPATCH_DEBOUNCE}
+     * @param interval {@link #DISPATCH_ON_CHANGE}时为两次派发的最小间隔, {@link #DISPATCH_DEBOUNCE}时为停止后等待的时间(ms)
+     */
+    public void setDispatchMode(int mode, long interval) {
+        if (mode != DISPATCH_ON_SETTLE && mode != DISPATCH_ON_CHANGE && mode != DISPATCH_DEBOUNCE) {
+            throw new IllegalArgumentException("unknown dispatch mode: " + mode);
+        }
+        mDispatchMode = mode;
+        mDispatchInterval = Math.max(0, interval);
+        removeCallbacks(mDispatchRunnable);
+    }
+
+    /**
+     * @param data 显示的List数据, 内部会拷贝一份, 不会修改传入的List
      */
     public void setData(List<String> data) {
-        mDataList = data;
-        mCurrentSelectedIndex = data.size() / 4;
+        setAdapter(new ListPickerAdapter(data));
+    }
+
+    /**
+     * @param adapter 数据适配器, 只会获取可见的item文本
+     */
+    public void setAdapter(PickerAdapter adapter) {
+        PickerAdapter oldAdapter = mDataModel.getAdapter();
+        if (oldAdapter != null) {
+            oldAdapter.unregisterDataSetObserver(mDataSetObserver);
+        }
+        stopScroll();
+        removeCallbacks(mDispatchRunnable);
+        mLastDispatchIndex = -1;
+        mMoveLen = 0;
+        mDataModel.setAdapter(adapter);
+        if (adapter != null) {
+            adapter.registerDataSetObserver(mDataSetObserver);
+        }
+        clearTextCaches();
         invalidate();
     }
 
+    /**
+     * @return 数据适配器
+     */
+    public PickerAdapter getAdapter() {
+        return mDataModel.getAdapter();
+    }
+
     /**
      * @param loop 循环显示(控制内容是否首尾相连)
      */
     public void setIsLoop(boolean loop) {
-        isLoop = loop;
+        mDataModel.setLoop(loop);
+        invalidate();
+    }
+
+    /**
+     * @param flingEnabled 手指快速抬起时是否惯性滑动, 并停止在某个item的位置
+     */
+    public void setFlingEnabled(boolean flingEnabled) {
+        isFlingEnabled = flingEnabled;
+    }
+
+    /**
+     * 使用文本图集绘制, 可见的item按几个固定的大小预先绘制到Bitmap中, 滑动时只缩放绘制Bitmap,
+     * 不再按连续变化的大小绘制文字, 适用于低端设备或高刷新率的屏幕
+     *
+     * @param textAtlasEnabled 是否使用文本图集绘制
+     */
+    public void setTextAtlasEnabled(boolean textAtlasEnabled) {
+        if (isTextAtlasEnabled == textAtlasEnabled) return;
+        isTextAtlasEnabled = textAtlasEnabled;
+        if (textAtlasEnabled) {
+            configureTextAtlas();
+        } else {
+            mTextAtlas.release();
+        }
+        invalidate();
     }
 
     /**
@@ -199,7 +433,39 @@ public class  PickerView extends View {
      * @return 获取选中的内容
      */
     public String getSelected() {
-        return mDataList.get(mCurrentSelectedIndex);
+        return mDataModel.getSelected();
+    }
+
+    /**
+     * @return 获取选中的item在数据中的位置
+     */
+    public int getSelectedIndex() {
+        return mDataModel.getSelectedIndex();
+    }
+
+    /**
+     * 调试使用, 绘制文本时缓存命中的次数, 滑动时应该只增加命中次数
+     *
+     * @return 缓存命中的次数
+     */
+    public long getTextCacheHitCount() {
+        return mTextLayoutCache.getHitCount();
+    }
+
+    /**
+     * 调试使用, 绘制文本时缓存未命中的次数, 每次未命中都会测量文本并分配对象
+     *
+     * @return 缓存未命中的次数
+     */
+    public long getTextCacheMissCount() {
+        return mTextLayoutCache.getMissCount();
+    }
+
+    /**
+     * 调试使用, 重置缓存命中和未命中的次数
+     */
+    public void resetTextCacheCounters() {
+        mTextLayoutCache.resetCounters();
     }
 
     /**
@@ -219,24 +485,12 @@ public class  PickerView extends View {
     }
 
     /**
-     * @param selected 选中的item的index
+     * @param selected 选中的item在数据中的index
      */
     public void setSelected(int selected) {
-        mCurrentSelectedIndex = selected;
-        if (isLoop) {
-            int distance = mDataList.size() / 2 - mCurrentSelectedIndex;
-            if (distance < 0) {
-                for (int i = 0; i < -distance; i++) {
-                    moveHeadToTail();
-                    mCurrentSelectedIndex--;
-                }
-            } else if (distance > 0) {
-                for (int i = 0; i < distance; i++) {
-                    moveTailToHead();
-                    mCurrentSelectedIndex++;
-                }
-            }
-        }
+        mDataModel.setSelectedIndex(selected);
+        // 代码设置的选中不派发, 之后滑动回原来派发的位置时仍然需要派发
+        mLastDispatchIndex = mDataModel.getSelectedIndex();
         invalidate();
     }
 
@@ -244,33 +498,106 @@ public class  PickerView extends View {
      * @param selected 选中的item的内容
      */
     public void setSelected(String selected) {
-        for (int i = 0; i < mDataList.size(); i++) {
-            if (mDataList.get(i).equals(selected)) {
-                setSelected(i);
-                break;
-            }
-        }
+        if (mDataModel.isEmpty()) return;
+        int index = isLookupIndexEnabled ? getLookupIndex().indexOf(selected) : mDataModel.indexOf(selected);
+        if (index >= 0) setSelected(index);
     }
 
-    private void moveHeadToTail() {
-        if (isLoop) {
-            String head = mDataList.get(0);
-            mDataList.remove(0);
-            mDataList.add(head);
-        }
+    /**
+     * 选中文本以prefix开头(忽略大小写)的item, 按文本排序后的第一个
+     *
+     * @param prefix 文本的前缀
+     * @return 是否找到对应的item
+     */
+    public boolean setSelectedByPrefix(String prefix) {
+        if (mDataModel.isEmpty()) return false;
+        int index = getLookupIndex().indexOfPrefix(prefix);
+        if (index >= 0) setSelected(index);
+        return index >= 0;
     }
 
-    private void moveTailToHead() {
-        if (isLoop) {
-            String tail = mDataList.get(mDataList.size() - 1);
-            mDataList.remove(mDataList.size() - 1);
-            mDataList.add(0, tail);
-        }
+    /**
+     * 选中数值最接近value的item, 适用于数值范围的数据, 非数值的item会被忽略
+     *
+     * @param value 数值
+     * @return 是否找到对应的item
+     */
+    public boolean setSelectedClosest(double value) {
+        if (mDataModel.isEmpty()) return false;
+        int index = getLookupIndex().indexOfClosest(value);
+        if (index >= 0) setSelected(index);
+        return index >= 0;
+    }
 
+    /**
+     * 开启后{@link #setSelected(String)}使用查找索引, 索引在第一次查找时遍历所有数据创建, 之后的查找为O(1),
+     * 适用于同一份数据需要多次按文本选中的场景. {@link #setSelectedByPrefix(String)}和
+     * {@link #setSelectedClosest(double)}总是使用查找索引
+     *
+     * @param lookupIndexEnabled 是否使用查找索引
+     */
+    public void setLookupIndexEnabled(boolean lookupIndexEnabled) {
+        isLookupIndexEnabled = lookupIndexEnabled;
+    }
+
+    /**
+     * @return 查找索引, 不存在时创建
+     */
+    private LookupIndex getLookupIndex() {
+        if (mLookupIndex == null) {
+            mLookupIndex = LookupIndex.build(mDataModel.getAdapter());
+        }
+        return mLookupIndex;
     }
 
     private void performSelect() {
+        if (mGroupSelectListener != null) mGroupSelectListener.onSelect(this);
         if (mSelectListener != null) mSelectListener.onSelect(this);
+        onSettled();
+        sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_SELECTED);
+    }
+
+    /**
+     * 滑动过程中选中的item改变
+     */
+    private void onSelectedChanging() {
+        if (mItemSelectedListener == null) return;
+        if (mDispatchMode == DISPATCH_ON_CHANGE) {
+            long delay = mLastDispatchTime + mDispatchInterval - SystemClock.uptimeMillis();
+            if (delay <= 0) {
+                removeCallbacks(mDispatchRunnable);
+                dispatchItemSelected();
+            } else {
+                // 限流时间内只保留一次派发, 派发时取最新选中的item
+                removeCallbacks(mDispatchRunnable);
+                postDelayed(mDispatchRunnable, delay);
+            }
+        } else if (mDispatchMode == DISPATCH_DEBOUNCE) {
+            removeCallbacks(mDispatchRunnable);
+        }
+    }
+
+    /**
+     * 滑动停止, 选中的item已经确定
+     */
+    private void onSettled() {
+        if (mItemSelectedListener == null) return;
+        if (mDispatchMode == DISPATCH_DEBOUNCE) {
+            removeCallbacks(mDispatchRunnable);
+            postDelayed(mDispatchRunnable, mDispatchInterval);
+        } else {
+            removeCallbacks(mDispatchRunnable);
+            dispatchItemSelected();
+        }
+    }
+
+    private void dispatchItemSelected() {
+        if (mItemSelectedListener == null || mDataModel.isEmpty()) return;
+        int index = mDataModel.getSelectedIndex();
+        if (index == mLastDispatchIndex) return;
+        mLastDispatchIndex = index;
+        mLastDispatchTime = SystemClock.uptimeMillis();
+        mItemSelectedListener.onItemSelected(index, mDataModel.getSelected());
     }
 
     @Override
@@ -282,15 +609,45 @@ public class  PickerView extends View {
         // 按照View的高度计算字体大小
         mSelectedTextSize = mViewHeight / 8.8f;
         mUnSelectedTextSize = mSelectedTextSize / 1.8f;
+        mTextLayoutCache.setMeasureParams(mSelectedTextSize, mViewWidth - getPaddingLeft() - getPaddingRight());
         isInit = true;
         invalidate();
     }
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (isTextAtlasEnabled) configureTextAtlas();
+    }
+
+    /**
+     * 按照View的大小和文字大小创建文本图集
+     */
+    private void configureTextAtlas() {
+        float margin = MARGIN_ALPHA * mUnSelectedTextSize;
+        if (margin <= 0) return;
+        // 选中的item和上下两侧可见的item, 每侧多预留一行滑动中的item
+        int visibleItemCount = 2 * ((int) Math.ceil(mViewHeight / 2.0f / margin) + 2) + 1;
+        mTextAtlas.configure(mViewWidth - getPaddingLeft() - getPaddingRight(),
+                mUnSelectedTextSize, mSelectedTextSize, visibleItemCount);
+    }
+
+    /**
+     * 数据改变后清空文本的缓存
+     */
+    private void clearTextCaches() {
+        mTextLayoutCache.clearLabels();
+        mTextAtlas.clear();
+        mLookupIndex = null;
+        mLookupGeneration++;
+        isLookupIndexBuilding = false;
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
         // 根据index绘制view
-        if (isInit)
+        if (isInit && !mDataModel.isEmpty())
             drawData(canvas);
     }
 
@@ -299,27 +656,35 @@ public class  PickerView extends View {
         float scale = parabola(mViewHeight / 4.0f, mMoveLen);
         float size = (mSelectedTextSize - mUnSelectedTextSize) * scale + mUnSelectedTextSize;
 
+        if (isTextAtlasEnabled) mTextAtlas.beginFrame();
         mSelectedPaint.setColor(mPrimaryTextColor);
-        mSelectedPaint.setTextSize(size);
-        mSelectedPaint.setAlpha((int) ((mMaxTextAlpha - mMinTextAlpha) * scale + mMinTextAlpha));
-
-        // text居中绘制，注意baseline的计算才能达到居中，y值是text中心坐标
-        float x = (float) (mViewWidth / 2.0);
         float y = (float) (mViewHeight / 2.0 + mMoveLen);
-        Paint.FontMetricsInt fmi = mSelectedPaint.getFontMetricsInt();
-        float baseline = (float) (y - (fmi.bottom / 2.0 + fmi.top / 2.0));
-
-        canvas.drawText(mDataList.get(mCurrentSelectedIndex), x, baseline, mSelectedPaint);
+        drawItem(canvas, mDataModel.getSelectedIndex(), size, scale, y, mSelectedPaint);
+        // 只绘制落在View内的item, 超出可见范围的不再测量和绘制
+        mUnSelectedPaint.setColor(mSecondTextColor);
+        int visibleCount = getVisibleCount();
         // 绘制上方data
-        for (int i = 1; (mCurrentSelectedIndex - i) >= 0; i++) {
+        for (int i = 1, above = Math.min(mDataModel.getAboveCount(), visibleCount); i <= above; i++) {
             drawOtherText(canvas, i, -1);
         }
         // 绘制下方data
-        for (int i = 1; (mCurrentSelectedIndex + i) < mDataList.size(); i++) {
+        for (int i = 1, below = Math.min(mDataModel.getBelowCount(), visibleCount); i <= below; i++) {
             drawOtherText(canvas, i, 1);
         }
     }
 
+    /**
+     * 计算选中位置上方或下方可见的item数量, 只与View的高度和间距有关, 与数据量无关
+     *
+     * @return 单侧可见的item数量(包含一行预留)
+     */
+    private int getVisibleCount() {
+        float margin = MARGIN_ALPHA * mUnSelectedTextSize;
+        if (margin <= 0) return 0;
+        // 偏移量超过半个View高度加上滑动距离的item不可见, 额外多绘制一行避免滑入时出现空白
+        return (int) Math.ceil((mViewHeight / 2.0f + Math.abs(mMoveLen)) / margin) + 1;
+    }
+
     /**
      * @param canvas
      * @param position 距离mCurrentSelected的差值
@@ -330,93 +695,436 @@ public class  PickerView extends View {
         float scale = parabola(mViewHeight / 4.0f, d);
         float size = (mSelectedTextSize - mUnSelectedTextSize) * scale + mUnSelectedTextSize;
 
-        mUnSelectedPaint.setColor(mSecondTextColor);
-        mUnSelectedPaint.setTextSize(size);
-        mUnSelectedPaint.setAlpha((int) ((mMaxTextAlpha - mMinTextAlpha) * scale + mMinTextAlpha));
         float y = (float) (mViewHeight / 2.0 + type * d);
-        Paint.FontMetricsInt fmi = mUnSelectedPaint.getFontMetricsInt();
-        float baseline = (float) (y - (fmi.bottom / 2.0 + fmi.top / 2.0));
-        canvas.drawText(mDataList.get(mCurrentSelectedIndex + type * position),
-                (float) (mViewWidth / 2.0), baseline, mUnSelectedPaint);
+        drawItem(canvas, mDataModel.indexOf(type * position), size, scale, y, mUnSelectedPaint);
+    }
+
+    /**
+     * 绘制一个item, 颜色在drawData中统一设置, 这里只设置量化后的大小和透明度
+     *
+     * @param canvas 画布
+     * @param index  item在数据中的位置
+     * @param size   文字大小
+     * @param scale  抛物线计算的缩放比例
+     * @param y      text中心的y坐标
+     * @param paint  绘制的画笔
+     */
+    private void drawItem(Canvas canvas, int index, float size, float scale, float y, Paint paint) {
+        float x = (float) (mViewWidth / 2.0);
+        String text = getLabel(index);
+        paint.setTextSize(TextLayoutCache.quantize(size));
+        paint.setAlpha((int) ((mMaxTextAlpha - mMinTextAlpha) * scale + mMinTextAlpha));
+        if (isTextAtlasEnabled && mTextAtlas.isConfigured()) {
+            mTextAtlas.draw(canvas, index, text, paint.getTextSize(), x, y, paint, mTextLayoutCache);
+        } else {
+            // text居中绘制，注意baseline的计算才能达到居中，y值是text中心坐标
+            float baseline = y + mTextLayoutCache.getBaselineOffset(paint);
+            canvas.drawText(text, x, baseline, paint);
+        }
+    }
+
+    /**
+     * @param index item在数据中的位置
+     * @return 绘制的文本, 缓存中没有时才从适配器获取
+     */
+    private String getLabel(int index) {
+        String label = mTextLayoutCache.getLabel(index);
+        return label != null ? label : mTextLayoutCache.putLabel(index, mDataModel.getText(index));
     }
 
     @SuppressLint("ClickableViewAccessibility")
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        if (mVelocityTracker == null) {
+            mVelocityTracker = VelocityTracker.obtain();
+        }
+        mVelocityTracker.addMovement(event);
         switch (event.getActionMasked()) {
             case MotionEvent.ACTION_DOWN:
                 doDown(event);
                 break;
             case MotionEvent.ACTION_MOVE:
-                mMoveLen += (event.getY() - mLastDownY);
-                if (mMoveLen > MARGIN_ALPHA * mUnSelectedTextSize / 2) {
-                    if (!isLoop && mCurrentSelectedIndex == 0) {
-                        mLastDownY = event.getY();
-                        invalidate();
-                        return true;
-                    }
-                    if (!isLoop) mCurrentSelectedIndex--;
-                    // 往下滑超过离开距离
-                    moveTailToHead();
-                    mMoveLen = mMoveLen - MARGIN_ALPHA * mUnSelectedTextSize;
-                } else if (mMoveLen < -MARGIN_ALPHA * mUnSelectedTextSize / 2) {
-                    if (mCurrentSelectedIndex == mDataList.size() - 1) {
-                        mLastDownY = event.getY();
-                        invalidate();
-                        return true;
-                    }
-                    if (!isLoop) mCurrentSelectedIndex++;
-                    // 往上滑超过离开距离
-                    moveHeadToTail();
-                    mMoveLen = mMoveLen + MARGIN_ALPHA * mUnSelectedTextSize;
-                }
-
-                mLastDownY = event.getY();
-                invalidate();
+                doMove(event);
                 break;
             case MotionEvent.ACTION_UP:
-                doUp(event);
+                mVelocityTracker.computeCurrentVelocity(1000, mMaximumVelocity);
+                doUp(mVelocityTracker.getYVelocity());
+                recycleVelocityTracker();
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                doUp(0);
+                recycleVelocityTracker();
                 break;
         }
         return true;
     }
 
     private void doDown(MotionEvent event) {
-        if (mTask != null) {
-            mTask.cancel();
-            mTask = null;
-        }
+        stopScroll();
         mLastDownY = event.getY();
     }
 
     private void doMove(MotionEvent event) {
-        mMoveLen += (event.getY() - mLastDownY);
-        if (mMoveLen > MARGIN_ALPHA * mUnSelectedTextSize / 2) {
-            // 往下滑超过离开距离
-            moveTailToHead();
-            mMoveLen = mMoveLen - MARGIN_ALPHA * mUnSelectedTextSize;
-        } else if (mMoveLen < -MARGIN_ALPHA * mUnSelectedTextSize / 2) {
-            // 往上滑超过离开距离
-            moveHeadToTail();
-            mMoveLen = mMoveLen + MARGIN_ALPHA * mUnSelectedTextSize;
-        }
-
+        scrollBy(event.getY() - mLastDownY);
         mLastDownY = event.getY();
         invalidate();
     }
 
-    private void doUp(MotionEvent event) {
-        // 抬起手后mCurrentSelected的位置由当前位置move到中间选中位置
+    /**
+     * @param velocityY 手指抬起时的速度, 大于最小速度时惯性滑动, 否则回滚到中间选中位置
+     */
+    private void doUp(float velocityY) {
+        if (isFlingEnabled && Math.abs(velocityY) > mMinimumVelocity) {
+            fling((int) velocityY);
+        } else {
+            settle();
+        }
+    }
+
+    /**
+     * 惯性滑动, 按照速度计算出自然减速停止的位置, 再调整到最近的item的位置, 使滑动结束时正好停在item上
+     *
+     * @param velocityY 手指抬起时的速度
+     */
+    private void fling(int velocityY) {
+        float margin = MARGIN_ALPHA * mUnSelectedTextSize;
+        if (margin <= 0) {
+            settle();
+            return;
+        }
+        mScroller.fling(0, 0, 0, velocityY, 0, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        int distance = mScroller.getFinalY();
+        int duration = mScroller.getDuration();
+        mScroller.forceFinished(true);
+
+        // 停止时相对于当前选中item移动的item数量, 正数往上一个方向移动, 负数往下一个方向移动
+        int count = Math.round((mMoveLen + distance) / margin);
+        duration = Math.max(MIN_FLING_DURATION, Math.min(duration, MAX_FLING_DURATION));
+        scrollItems(-count, duration);
+    }
+
+    /**
+     * 滚动指定数量的item, 停止时正好停在item的位置, 不循环时限制在数据范围内
+     *
+     * @param count    滚动的item数量, 正数选中后面的item, 负数选中前面的item
+     * @param duration 滚动的时间
+     */
+    private void scrollItems(int count, int duration) {
+        float margin = MARGIN_ALPHA * mUnSelectedTextSize;
+        if (!mDataModel.isLoop()) {
+            int index = mDataModel.getSelectedIndex();
+            count = Math.max(-index, Math.min(count, mDataModel.size() - 1 - index));
+        }
+        // 选中后面的item时内容往上滑动
+        int dy = Math.round(-count * margin - mMoveLen);
+        if (margin <= 0 || dy == 0) {
+            settle();
+            return;
+        }
+        mLastScrollY = 0;
+        mScroller.startScroll(0, 0, 0, dy, duration);
+        postFrame();
+    }
+
+    /**
+     * 抬起手后由当前位置回滚到中间选中位置
+     */
+    private void settle() {
         if (Math.abs(mMoveLen) < 0.0001) {
             mMoveLen = 0;
+            invalidate();
+            onSettled();
+            return;
+        }
+        int dy = -Math.round(mMoveLen);
+        // 保持原来每10ms移动SPEED像素的回滚速度
+        int duration = (int) Math.min(MAX_SETTLE_DURATION, Math.abs(dy) / SPEED * 10);
+        mLastScrollY = 0;
+        mScroller.startScroll(0, 0, 0, dy, duration);
+        postFrame();
+    }
+
+    /**
+     * 滑动内容, 超过一半间距时切换选中的item
+     *
+     * @param dy 滑动的距离, 正数为往下滑, 负数为往上滑
+     * @return 不循环时到达边界返回false
+     */
+    private boolean scrollBy(float dy) {
+        float margin = MARGIN_ALPHA * mUnSelectedTextSize;
+        int oldIndex = mDataModel.getSelectedIndex();
+        boolean inBounds = true;
+        mMoveLen += dy;
+        while (inBounds && mMoveLen > margin / 2) {
+            // 往下滑超过离开距离, 选中上一个, 不循环时到达顶部则停止移动
+            inBounds = mDataModel.move(-1);
+            if (inBounds) mMoveLen = mMoveLen - margin;
+        }
+        while (inBounds && mMoveLen < -margin / 2) {
+            // 往上滑超过离开距离, 选中下一个, 不循环时到达底部则停止移动
+            inBounds = mDataModel.move(1);
+            if (inBounds) mMoveLen = mMoveLen + margin;
+        }
+        if (oldIndex != mDataModel.getSelectedIndex()) onSelectedChanging();
+        return inBounds;
+    }
+
+    /**
+     * 每一帧根据mScroller的位置更新滑动距离
+     */
+    private void computeScrollFrame() {
+        if (mScroller.computeScrollOffset()) {
+            int currY = mScroller.getCurrY();
+            boolean inBounds = scrollBy(currY - mLastScrollY);
+            mLastScrollY = currY;
+            invalidate();
+            if (inBounds && !mScroller.isFinished()) {
+                postFrame();
+                return;
+            }
+            mScroller.forceFinished(true);
+        }
+        // 滑动的距离已经对齐到item, 消除取整的误差
+        mMoveLen = 0;
+        invalidate();
+        performSelect();
+    }
+
+    private void postFrame() {
+        if (!isFramePosted) {
+            isFramePosted = true;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
+    /**
+     * 停止正在进行的惯性滑动或者回滚
+     */
+    private void stopScroll() {
+        mScroller.forceFinished(true);
+        if (isFramePosted) {
+            isFramePosted = false;
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+        }
+    }
+
+    /**
+     * @return 是否正在惯性滑动或者回滚
+     */
+    boolean isScrolling() {
+        return isFramePosted;
+    }
+
+    private void recycleVelocityTracker() {
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        stopScroll();
+        recycleVelocityTracker();
+        removeCallbacks(mDispatchRunnable);
+        mTextAtlas.release();
+        mMoveLen = 0;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (isTextAtlasEnabled && mViewWidth > 0) configureTextAtlas();
+    }
+
+    @Override
+    public boolean onKeyDown(int keyCode, KeyEvent event) {
+        if (!isScroll || mDataModel.isEmpty()) return super.onKeyDown(keyCode, event);
+        switch (keyCode) {
+            case KeyEvent.KEYCODE_DPAD_UP:
+                return smoothScrollItems(-1);
+            case KeyEvent.KEYCODE_DPAD_DOWN:
+                return smoothScrollItems(1);
+            case KeyEvent.KEYCODE_PAGE_UP:
+                return smoothScrollItems(-getPageItemCount());
+            case KeyEvent.KEYCODE_PAGE_DOWN:
+                return smoothScrollItems(getPageItemCount());
+            case KeyEvent.KEYCODE_MOVE_HOME:
+                jumpTo(0);
+                return true;
+            case KeyEvent.KEYCODE_MOVE_END:
+                jumpTo(mDataModel.size() - 1);
+                return true;
+        }
+        int unicodeChar = event.getUnicodeChar();
+        if (unicodeChar > 0 && !Character.isISOControl(unicodeChar) && !event.isCtrlPressed()) {
+            typeAhead((char) unicodeChar);
+            return true;
+        }
+        return super.onKeyDown(keyCode, event);
+    }
+
+    /**
+     * 动画滚动指定数量的item
+     *
+     * @param count 滚动的item数量, 正数选中后面的item, 负数选中前面的item
+     * @return 是否处理了滚动
+     */
+    private boolean smoothScrollItems(int count) {
+        if (!mDataModel.isLoop()) {
+            int target = mDataModel.getSelectedIndex() + count;
+            if (target < 0 || target >= mDataModel.size()) return false;
+        }
+        stopScroll();
+        scrollItems(count, KEY_SCROLL_DURATION);
+        return true;
+    }
+
+    /**
+     * @return 一页的item数量, 即选中位置一侧完整可见的item数量
+     */
+    private int getPageItemCount() {
+        float margin = MARGIN_ALPHA * mUnSelectedTextSize;
+        return margin <= 0 ? 1 : Math.max(1, (int) (mViewHeight / 2.0f / margin));
+    }
+
+    /**
+     * 直接选中指定的位置, 不经过滚动动画
+     *
+     * @param index 选中的位置
+     */
+    private void jumpTo(int index) {
+        stopScroll();
+        mMoveLen = 0;
+        // 不经过setSelected(int), 键盘和前缀跳转需要派发选中
+        mDataModel.setSelectedIndex(index);
+        invalidate();
+        performSelect();
+    }
+
+    /**
+     * 根据键盘输入的前缀跳转到对应的item, 连续输入的字符组成前缀. 适配器可以直接计算时不需要查找索引,
+     * 否则通过查找索引二分查找, 索引在后台创建, 创建完成后再跳转到最新输入的前缀
+     *
+     * @param c 输入的字符
+     */
+    private void typeAhead(char c) {
+        long now = SystemClock.uptimeMillis();
+        if (now - mLastTypeAheadTime > TYPE_AHEAD_TIMEOUT) {
+            mTypeAheadPrefix.setLength(0);
+        }
+        mLastTypeAheadTime = now;
+        mTypeAheadPrefix.append(c);
+        int index = findPrefix(mTypeAheadPrefix.toString());
+        if (index == -1 && mTypeAheadPrefix.length() > 1) {
+            // 新的前缀没有匹配时, 以当前字符重新开始
+            mTypeAheadPrefix.setLength(0);
+            mTypeAheadPrefix.append(c);
+            index = findPrefix(mTypeAheadPrefix.toString());
+        }
+        if (index >= 0) jumpTo(index);
+    }
+
+    /**
+     * @param prefix 输入的前缀
+     * @return 前缀对应的位置, 没有时返回-1, 查找索引还在创建时返回{@link PickerAdapter#PREFIX_UNKNOWN}
+     */
+    private int findPrefix(String prefix) {
+        int index = mDataModel.getAdapter().getPositionForPrefix(prefix);
+        if (index != PickerAdapter.PREFIX_UNKNOWN) return index;
+        if (mLookupIndex != null) return mLookupIndex.indexOfPrefix(prefix);
+        buildLookupIndexAsync();
+        return PickerAdapter.PREFIX_UNKNOWN;
+    }
+
+    /**
+     * 在后台线程遍历适配器创建查找索引, 避免第一次输入时在主线程格式化所有item
+     */
+    private void buildLookupIndexAsync() {
+        if (isLookupIndexBuilding) return;
+        isLookupIndexBuilding = true;
+        final int generation = mLookupGeneration;
+        final PickerAdapter adapter = mDataModel.getAdapter();
+        LOOKUP_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                LookupIndex index;
+                try {
+                    index = LookupIndex.build(adapter);
+                } catch (RuntimeException e) {
+                    // 创建时数据改变, 数据改变后会重新创建
+                    index = null;
+                }
+                final LookupIndex result = index;
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLookupIndexBuilt(generation, result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onLookupIndexBuilt(int generation, @Nullable LookupIndex index) {
+        if (generation != mLookupGeneration) return;
+        isLookupIndexBuilding = false;
+        if (index == null) return;
+        if (mLookupIndex == null) mLookupIndex = index;
+        // 还在输入时跳转到最新的前缀
+        if (mTypeAheadPrefix.length() == 0
+                || SystemClock.uptimeMillis() - mLastTypeAheadTime > TYPE_AHEAD_TIMEOUT) {
             return;
         }
-        if (mTask != null) {
-            mTask.cancel();
-            mTask = null;
+        int position = mLookupIndex.indexOfPrefix(mTypeAheadPrefix.toString());
+        if (position < 0 && mTypeAheadPrefix.length() > 1) {
+            char c = mTypeAheadPrefix.charAt(mTypeAheadPrefix.length() - 1);
+            mTypeAheadPrefix.setLength(0);
+            mTypeAheadPrefix.append(c);
+            position = mLookupIndex.indexOfPrefix(mTypeAheadPrefix.toString());
         }
-        mTask = new MyTimerTask(mUpdateHandler);
-        timer.schedule(mTask, 0, 10);
+        if (position >= 0) jumpTo(position);
+    }
+
+    @Override
+    public CharSequence getAccessibilityClassName() {
+        return PickerView.class.getName();
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        if (mDataModel.isEmpty()) return;
+        info.setText(mDataModel.getSelected());
+        if (!isScroll) return;
+        int index = mDataModel.getSelectedIndex();
+        boolean isLoop = mDataModel.isLoop();
+        info.setScrollable(true);
+        if (isLoop || index < mDataModel.size() - 1) {
+            info.addAction(AccessibilityNodeInfo.AccessibilityAction.ACTION_SCROLL_FORWARD);
+        }
+        if (isLoop || index > 0) {
+            info.addAction(AccessibilityNodeInfo.AccessibilityAction.ACTION_SCROLL_BACKWARD);
+        }
+    }
+
+    @Override
+    public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
+        super.onPopulateAccessibilityEvent(event);
+        if (!mDataModel.isEmpty()) event.getText().add(mDataModel.getSelected());
+    }
+
+    @Override
+    public boolean performAccessibilityAction(int action, Bundle arguments) {
+        if (isScroll && !mDataModel.isEmpty()) {
+            if (action == AccessibilityNodeInfo.ACTION_SCROLL_FORWARD) {
+                return smoothScrollItems(1);
+            } else if (action == AccessibilityNodeInfo.ACTION_SCROLL_BACKWARD) {
+                return smoothScrollItems(-1);
+            }
+        }
+        return super.performAccessibilityAction(action, arguments);
     }
 
     @Override
@@ -440,16 +1148,15 @@ public class  PickerView extends View {
         void onSelect(PickerView pickerView);
     }
 
-    static class MyTimerTask extends TimerTask {
-        Handler mHandler;
-
-        MyTimerTask(Handler handler) {
-            mHandler = handler;
-        }
+    /**
+     * 选中item的监听事件, 直接携带选中的位置和文本, 选中的位置没有改变时不会重复回调
+     */
+    public interface OnItemSelectedListener {
 
-        @Override
-        public void run() {
-            mHandler.sendMessage(mHandler.obtainMessage());
-        }
+        /**
+         * @param position 选中的item在数据中的位置
+         * @param item     选中的item的文本
+         */
+        void onItemSelected(int position, String item);
     }
 }
\ No newline at end of file
@@ -0,0 +1,196 @@
+package com.dzenm.pickerview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.util.Arrays;
+
+/**
+ * PickerView的文本图集, 可见的item文本按几个固定的大小预先绘制到一张ALPHA_8的Bitmap中,
+ * 绘制时通过drawBitmap缩放到实际大小, 颜色和透明度由画笔决定, 避免每一帧按连续变化的大小光栅化文本.
+ * 图集按槽位保存文本, 每一帧记录使用的槽位, 数据窗口移动后最久没有使用的槽位会被替换
+ *
+ * @author dzenm
+ */
+final class TextAtlas {
+
+    /**
+     * 预先绘制的文字大小的数量, 从未选中的大小到选中的大小平均分布
+     */
+    static final int LEVEL_COUNT = 4;
+
+    /**
+     * 除了可见的item, 额外为大小变化预留的槽位数量
+     */
+    private static final int EXTRA_SLOT_COUNT = 3 * LEVEL_COUNT;
+
+    private final Paint mRasterPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    /**
+     * 缩放绘制图集的画笔, 需要过滤采样, 否则缩小的文字会出现锯齿并且滑动时闪烁
+     */
+    private final Paint mBitmapPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final Rect mSrcRect = new Rect();
+    private final RectF mDstRect = new RectF();
+    private final Canvas mCanvas = new Canvas();
+
+    private Bitmap mBitmap;
+
+    /**
+     * 每个大小等级对应的文字大小
+     */
+    private final float[] mLevelSizes = new float[LEVEL_COUNT];
+
+    /**
+     * 槽位的宽度和高度
+     */
+    private int mSlotWidth, mSlotHeight;
+
+    /**
+     * 每个槽位保存的item位置, 大小等级和最后一次使用的帧
+     */
+    private int[] mSlotIndexes = new int[0];
+    private int[] mSlotLevels = new int[0];
+    private long[] mSlotFrames = new long[0];
+
+    /**
+     * 当前帧, 每次绘制前增加
+     */
+    private long mFrame;
+
+    TextAtlas() {
+        mRasterPaint.setStyle(Paint.Style.FILL);
+        mRasterPaint.setTextAlign(Paint.Align.CENTER);
+        mRasterPaint.setColor(Color.BLACK);
+    }
+
+    /**
+     * 按照View的大小重新创建图集
+     *
+     * @param width            槽位的宽度, 即文本可以绘制的宽度
+     * @param minTextSize      最小的文字大小
+     * @param maxTextSize      最大的文字大小
+     * @param visibleItemCount 同时可见的item数量
+     */
+    void configure(int width, float minTextSize, float maxTextSize, int visibleItemCount) {
+        release();
+        if (width <= 0 || maxTextSize <= 0) return;
+        for (int i = 0; i < LEVEL_COUNT; i++) {
+            mLevelSizes[i] = TextLayoutCache.quantize(
+                    minTextSize + (maxTextSize - minTextSize) * i / (LEVEL_COUNT - 1));
+        }
+        mRasterPaint.setTextSize(maxTextSize);
+        Paint.FontMetricsInt fmi = mRasterPaint.getFontMetricsInt();
+        mSlotWidth = width;
+        mSlotHeight = fmi.bottom - fmi.top + 2;
+
+        int slotCount = visibleItemCount + EXTRA_SLOT_COUNT;
+        mBitmap = Bitmap.createBitmap(mSlotWidth, mSlotHeight * slotCount, Bitmap.Config.ALPHA_8);
+        mCanvas.setBitmap(mBitmap);
+        mSlotIndexes = new int[slotCount];
+        mSlotLevels = new int[slotCount];
+        mSlotFrames = new long[slotCount];
+        clear();
+    }
+
+    boolean isConfigured() {
+        return mBitmap != null;
+    }
+
+    /**
+     * 数据改变时清空所有的槽位
+     */
+    void clear() {
+        Arrays.fill(mSlotIndexes, -1);
+        Arrays.fill(mSlotFrames, 0);
+        mFrame = 0;
+    }
+
+    /**
+     * 开始绘制新的一帧, 这一帧使用的槽位不会被替换
+     */
+    void beginFrame() {
+        mFrame++;
+    }
+
+    /**
+     * 从图集中绘制item文本
+     *
+     * @param canvas  画布
+     * @param index   item在数据中的位置
+     * @param label   item绘制的文本
+     * @param size    item的文字大小
+     * @param centerX 文本中心的x坐标
+     * @param centerY 文本中心的y坐标
+     * @param paint   设置了颜色和透明度的画笔, 只使用它的颜色
+     * @param cache   计算基线使用的缓存
+     */
+    void draw(Canvas canvas, int index, String label, float size, float centerX, float centerY,
+              Paint paint, TextLayoutCache cache) {
+        int level = getLevel(size);
+        int slot = obtainSlot(index, level, label, cache);
+        float scale = size / mLevelSizes[level];
+        float halfWidth = mSlotWidth * scale / 2, halfHeight = mSlotHeight * scale / 2;
+        mSrcRect.set(0, slot * mSlotHeight, mSlotWidth, (slot + 1) * mSlotHeight);
+        mDstRect.set(centerX - halfWidth, centerY - halfHeight, centerX + halfWidth, centerY + halfHeight);
+        mBitmapPaint.setColor(paint.getColor());
+        canvas.drawBitmap(mBitmap, mSrcRect, mDstRect, mBitmapPaint);
+    }
+
+    /**
+     * 释放图集的Bitmap
+     */
+    void release() {
+        if (mBitmap != null) {
+            mCanvas.setBitmap(null);
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+    }
+
+    /**
+     * @param size 文字大小
+     * @return 不小于文字大小的最小等级, 绘制时只缩小不放大
+     */
+    private int getLevel(float size) {
+        for (int i = 0; i < LEVEL_COUNT - 1; i++) {
+            if (size <= mLevelSizes[i]) return i;
+        }
+        return LEVEL_COUNT - 1;
+    }
+
+    /**
+     * 查找item对应大小等级的槽位, 没有时替换最久没有使用的槽位并绘制文本
+     */
+    private int obtainSlot(int index, int level, String label, TextLayoutCache cache) {
+        int eldest = 0;
+        for (int i = 0; i < mSlotIndexes.length; i++) {
+            if (mSlotIndexes[i] == index && mSlotLevels[i] == level) {
+                mSlotFrames[i] = mFrame;
+                return i;
+            }
+            if (mSlotFrames[i] < mSlotFrames[eldest]) eldest = i;
+        }
+        rasterize(eldest, label, mLevelSizes[level], cache);
+        mSlotIndexes[eldest] = index;
+        mSlotLevels[eldest] = level;
+        mSlotFrames[eldest] = mFrame;
+        return eldest;
+    }
+
+    private void rasterize(int slot, String label, float size, TextLayoutCache cache) {
+        int top = slot * mSlotHeight;
+        mCanvas.save();
+        mCanvas.clipRect(0, top, mSlotWidth, top + mSlotHeight);
+        mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        mRasterPaint.setTextSize(size);
+        float baseline = top + mSlotHeight / 2.0f + cache.getBaselineOffset(mRasterPaint);
+        mCanvas.drawText(label, mSlotWidth / 2.0f, baseline, mRasterPaint);
+        mCanvas.restore();
+    }
+}
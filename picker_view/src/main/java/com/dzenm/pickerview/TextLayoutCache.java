@@ -0,0 +1,157 @@
+package com.dzenm.pickerview;
+
+import android.graphics.Paint;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+import java.util.Arrays;
+
+/**
+ * PickerView绘制文本时的缓存, 文字大小按{@link #SIZE_STEP}量化后缓存基线的偏移量,
+ * 每个item按位置缓存截断后的文本, 滑动时绘制不再分配对象
+ *
+ * @author dzenm
+ */
+final class TextLayoutCache {
+
+    /**
+     * 文字大小的量化步长(px)
+     */
+    static final float SIZE_STEP = 0.5f;
+
+    /**
+     * item文本缓存的容量, 需要大于一屏可见的item数量
+     */
+    private static final int LABEL_CAPACITY = 64;
+
+    /**
+     * 复用的字体度量, 避免getFontMetricsInt()每次创建新的对象
+     */
+    private final Paint.FontMetricsInt mFontMetrics = new Paint.FontMetricsInt();
+
+    /**
+     * 测量文本宽度使用的画笔
+     */
+    private final TextPaint mMeasurePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+
+    /**
+     * 量化后的文字大小对应的基线偏移量, 没有缓存的为NaN
+     */
+    private float[] mBaselineOffsets = new float[0];
+
+    /**
+     * 按位置直接映射的文本缓存, 分别为item的位置和按宽度截断后的文本
+     */
+    private final int[] mLabelKeys = new int[LABEL_CAPACITY];
+    private final String[] mLabels = new String[LABEL_CAPACITY];
+
+    /**
+     * 文本允许的最大宽度, 小于等于0时不截断
+     */
+    private float mMaxWidth;
+
+    private long mHitCount, mMissCount;
+
+    TextLayoutCache() {
+        clearLabels();
+    }
+
+    /**
+     * @param size 文字大小
+     * @return 量化后的文字大小
+     */
+    static float quantize(float size) {
+        return Math.round(size / SIZE_STEP) * SIZE_STEP;
+    }
+
+    /**
+     * 设置测量文本时的参数, 参数改变时清空所有缓存
+     *
+     * @param textSize 测量文本宽度时的文字大小, 使用最大的文字大小
+     * @param maxWidth 文本允许的最大宽度
+     */
+    void setMeasureParams(float textSize, float maxWidth) {
+        mMeasurePaint.setTextSize(textSize);
+        mMaxWidth = maxWidth;
+        Arrays.fill(mBaselineOffsets, Float.NaN);
+        clearLabels();
+    }
+
+    /**
+     * 数据改变时清空文本缓存
+     */
+    void clearLabels() {
+        Arrays.fill(mLabelKeys, -1);
+        Arrays.fill(mLabels, null);
+    }
+
+    /**
+     * 获取文字居中绘制时基线相对于中心的偏移量
+     *
+     * @param paint 已经设置过量化后文字大小的画笔
+     * @return 基线的偏移量
+     */
+    float getBaselineOffset(Paint paint) {
+        int key = Math.round(paint.getTextSize() / SIZE_STEP);
+        if (key >= mBaselineOffsets.length) {
+            int oldLength = mBaselineOffsets.length;
+            mBaselineOffsets = Arrays.copyOf(mBaselineOffsets, key + 1);
+            Arrays.fill(mBaselineOffsets, oldLength, mBaselineOffsets.length, Float.NaN);
+        }
+        float offset = mBaselineOffsets[key];
+        if (Float.isNaN(offset)) {
+            mMissCount++;
+            paint.getFontMetricsInt(mFontMetrics);
+            offset = -(mFontMetrics.bottom / 2.0f + mFontMetrics.top / 2.0f);
+            mBaselineOffsets[key] = offset;
+        } else {
+            mHitCount++;
+        }
+        return offset;
+    }
+
+    /**
+     * @param index item在数据中的位置
+     * @return 缓存的绘制文本, 没有缓存时为null, 需要调用{@link #putLabel(int, String)}
+     */
+    String getLabel(int index) {
+        int slot = index & (LABEL_CAPACITY - 1);
+        if (mLabelKeys[slot] == index && mLabels[slot] != null) {
+            mHitCount++;
+            return mLabels[slot];
+        }
+        mMissCount++;
+        return null;
+    }
+
+    /**
+     * 测量并缓存item绘制的文本, 超过最大宽度时末尾截断为省略号
+     *
+     * @param index item在数据中的位置
+     * @param text  item的文本
+     * @return 绘制的文本
+     */
+    String putLabel(int index, String text) {
+        int slot = index & (LABEL_CAPACITY - 1);
+        float width = mMeasurePaint.measureText(text);
+        String label = text;
+        if (mMaxWidth > 0 && width > mMaxWidth) {
+            label = TextUtils.ellipsize(text, mMeasurePaint, mMaxWidth, TextUtils.TruncateAt.END).toString();
+        }
+        mLabelKeys[slot] = index;
+        mLabels[slot] = label;
+        return label;
+    }
+
+    long getHitCount() {
+        return mHitCount;
+    }
+
+    long getMissCount() {
+        return mMissCount;
+    }
+
+    void resetCounters() {
+        mHitCount = mMissCount = 0;
+    }
+}
@@ -0,0 +1,345 @@
+package com.dzenm.pickerview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * PickerView滑动时每一帧的开销, 在主机上重放合成的拖动和惯性滑动事件, 统计100, 1万和100万条数据时
+ * 每一帧绘制的item数量和从适配器获取文本的次数, 都不应该随数据量增长. 同时输出每一帧onTouchEvent和onDraw的
+ * 耗时和分配的内存, 只用于比较优化前后的数据, 不作为判断条件
+ *
+ * @author dzenm
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PickerViewScrollCostTest {
+
+    private static final int WIDTH = 600, HEIGHT = 800;
+    private static final int[] SIZES = {100, 10_000, 1_000_000};
+
+    /**
+     * 拖动的帧数和每一帧移动的距离
+     */
+    private static final int DRAG_FRAMES = 300;
+    private static final float DRAG_STEP = 12;
+
+    /**
+     * 来回拖动时单程的帧数, 每一帧移动DRAG_STEP, 总距离约为3个item
+     */
+    private static final int STEADY_FRAMES = 40;
+
+    /**
+     * 惯性滑动最多重放的帧数
+     */
+    private static final int MAX_FLING_FRAMES = 300;
+    private static final long FRAME_MILLIS = 16;
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_SUPPORTED = allocatedBytes() >= 0;
+
+    private final CountingCanvas mCanvas = new CountingCanvas();
+
+    @Test
+    public void drag() {
+        Result[] results = new Result[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++) {
+            PickerView pickerView = newPickerView(SIZES[i]);
+            // 第一次用于预热, 第二次统计
+            replayDrag(pickerView);
+            results[i] = replayDrag(pickerView);
+            report("drag", SIZES[i], results[i]);
+        }
+        assertConstantCost("drag", results);
+    }
+
+    @Test
+    public void fling() {
+        Result[] results = new Result[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++) {
+            PickerView pickerView = newPickerView(SIZES[i]);
+            replayFling(pickerView);
+            results[i] = replayFling(pickerView);
+            report("fling", SIZES[i], results[i]);
+        }
+        assertConstantCost("fling", results);
+    }
+
+    /**
+     * 文本图集和直接绘制文字的对比, 输出两种方式每一帧的耗时, 图集绘制时不应该再绘制文字
+     */
+    @Test
+    public void textAtlasDrag() {
+        int size = SIZES[SIZES.length - 1];
+        PickerView textView = newPickerView(size);
+        replayDrag(textView);
+        Result text = replayDrag(textView);
+        report("text", size, text);
+
+        PickerView atlasView = newPickerView(size);
+        atlasView.setTextAtlasEnabled(true);
+        replayDrag(atlasView);
+        Result atlas = replayDrag(atlasView);
+        report("atlas", size, atlas);
+        System.out.println(String.format(Locale.US, "PickerView atlas/text draw time=%.2f",
+                median(atlas.drawNanos, atlas.frames) / (double) Math.max(1, median(text.drawNanos, text.frames))));
+
+        assertTrue(text.maxDrawn > 0);
+        assertEquals("atlas frames still rasterize text", 0, atlas.maxDrawn);
+    }
+
+    /**
+     * 在同样的几个item之间来回拖动, 第一次来回之后绘制需要的文本和基线都已经缓存, 之后不应该再有未命中
+     */
+    @Test
+    public void steadyDragHitsTextCache() {
+        for (int size : SIZES) {
+            PickerView pickerView = newPickerView(size);
+            long downTime = SystemClock.uptimeMillis();
+            float y = HEIGHT / 2.0f;
+            Result result = new Result(2 * STEADY_FRAMES);
+            touch(pickerView, downTime, downTime, MotionEvent.ACTION_DOWN, y);
+            long eventTime = replaySteadyDrag(null, pickerView, downTime, downTime, y);
+            pickerView.resetTextCacheCounters();
+            eventTime = replaySteadyDrag(result, pickerView, downTime, eventTime, y);
+            assertEquals("text cache missed during steady drag of " + size + " items",
+                    0, pickerView.getTextCacheMissCount());
+            assertTrue(pickerView.getTextCacheHitCount() > 0);
+            touch(pickerView, downTime, eventTime + FRAME_MILLIS, MotionEvent.ACTION_UP, y);
+            idleUntilSettled();
+            report("steady", size, result);
+        }
+    }
+
+    private PickerView newPickerView(int size) {
+        PickerView pickerView = new PickerView(RuntimeEnvironment.getApplication());
+        pickerView.setAdapter(new CountingAdapter(size));
+        pickerView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        pickerView.layout(0, 0, WIDTH, HEIGHT);
+        pickerView.setSelected(size / 2);
+        return pickerView;
+    }
+
+    /**
+     * 手指按下后匀速向上拖动, 每一帧一个ACTION_MOVE
+     */
+    private Result replayDrag(PickerView pickerView) {
+        long downTime = SystemClock.uptimeMillis();
+        float y = HEIGHT / 2.0f;
+        Result result = new Result(DRAG_FRAMES);
+        touch(pickerView, downTime, downTime, MotionEvent.ACTION_DOWN, y);
+        for (int i = 1; i <= DRAG_FRAMES; i++) {
+            y -= DRAG_STEP;
+            MotionEvent event = obtain(downTime, downTime + i * FRAME_MILLIS, MotionEvent.ACTION_MOVE, y);
+            measureFrame(result, pickerView, event);
+            event.recycle();
+        }
+        touch(pickerView, downTime, downTime + (DRAG_FRAMES + 1) * FRAME_MILLIS, MotionEvent.ACTION_UP, y);
+        idleUntilSettled();
+        return result;
+    }
+
+    /**
+     * 从startY向上拖动STEADY_FRAMES帧再拖回startY, 手指不抬起
+     *
+     * @param result 统计的结果, 为null时只重放不统计
+     * @return 最后一个事件的时间
+     */
+    private long replaySteadyDrag(Result result, PickerView pickerView, long downTime, long eventTime, float startY) {
+        float y = startY;
+        for (int i = 0; i < 2 * STEADY_FRAMES; i++) {
+            y += i < STEADY_FRAMES ? -DRAG_STEP : DRAG_STEP;
+            eventTime += FRAME_MILLIS;
+            MotionEvent event = obtain(downTime, eventTime, MotionEvent.ACTION_MOVE, y);
+            if (result != null) {
+                measureFrame(result, pickerView, event);
+            } else {
+                pickerView.onTouchEvent(event);
+                pickerView.onDraw(mCanvas);
+            }
+            event.recycle();
+        }
+        return eventTime;
+    }
+
+    /**
+     * 快速向上滑动后抬起, 统计惯性滑动和回滚的每一帧
+     */
+    private Result replayFling(PickerView pickerView) {
+        long downTime = SystemClock.uptimeMillis();
+        float y = HEIGHT * 0.8f;
+        touch(pickerView, downTime, downTime, MotionEvent.ACTION_DOWN, y);
+        for (int i = 1; i <= 5; i++) {
+            y -= 60;
+            touch(pickerView, downTime, downTime + i * 8, MotionEvent.ACTION_MOVE, y);
+        }
+        touch(pickerView, downTime, downTime + 6 * 8, MotionEvent.ACTION_UP, y);
+
+        Result result = new Result(MAX_FLING_FRAMES);
+        while (result.frames < MAX_FLING_FRAMES && pickerView.isScrolling()) {
+            measureFrame(result, pickerView, null);
+        }
+        idleUntilSettled();
+        assertTrue("fling did not scroll", result.frames > 0);
+        return result;
+    }
+
+    /**
+     * 统计一帧绘制的item数量, 获取文本的次数, 耗时和分配的内存, event为null时推进主线程的时间驱动Choreographer的回调
+     */
+    private void measureFrame(Result result, PickerView pickerView, MotionEvent event) {
+        CountingAdapter adapter = (CountingAdapter) pickerView.getAdapter();
+        mCanvas.mDrawCount = 0;
+        adapter.mTextCount = 0;
+        long startBytes = allocatedBytes();
+        long startTime = System.nanoTime();
+        if (event != null) {
+            pickerView.onTouchEvent(event);
+        } else {
+            shadowOf(Looper.getMainLooper()).idleFor(FRAME_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        long touchTime = System.nanoTime();
+        long touchBytes = allocatedBytes();
+        pickerView.onDraw(mCanvas);
+        long drawTime = System.nanoTime();
+        long drawBytes = allocatedBytes();
+
+        result.touchNanos[result.frames] = touchTime - startTime;
+        result.drawNanos[result.frames] = drawTime - touchTime;
+        result.touchBytes += touchBytes - startBytes;
+        result.drawBytes += drawBytes - touchBytes;
+        result.frames++;
+        result.maxDrawn = Math.max(result.maxDrawn, mCanvas.mDrawCount);
+        result.maxText = Math.max(result.maxText, adapter.mTextCount);
+    }
+
+    private void idleUntilSettled() {
+        shadowOf(Looper.getMainLooper()).idleFor(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 输出每一帧耗时的中位数和平均分配的内存, 不支持统计线程分配内存的JVM上输出n/a
+     */
+    private static void report(String name, int size, Result result) {
+        System.out.println(String.format(Locale.US,
+                "PickerView %-6s size=%-8d frames=%-4d touch=%8.1fus/%s  draw=%8.1fus/%s",
+                name, size, result.frames,
+                median(result.touchNanos, result.frames) / 1000.0, formatBytes(result.touchBytes, result.frames),
+                median(result.drawNanos, result.frames) / 1000.0, formatBytes(result.drawBytes, result.frames)));
+    }
+
+    /**
+     * 最大数据量每一帧绘制的item数量不应该大于最小数据量, 每一帧获取文本的次数不应该超过绘制的item数量
+     */
+    private static void assertConstantCost(String name, Result[] results) {
+        Result smallest = results[0];
+        for (Result result : results) {
+            assertTrue(name + " drawn items grow with list size: " + smallest.maxDrawn + " -> " + result.maxDrawn,
+                    result.maxDrawn <= smallest.maxDrawn);
+            assertTrue(name + " formatted " + result.maxText + " items for " + result.maxDrawn + " drawn",
+                    result.maxText <= result.maxDrawn);
+        }
+    }
+
+    private static void touch(PickerView pickerView, long downTime, long eventTime, int action, float y) {
+        MotionEvent event = obtain(downTime, eventTime, action, y);
+        pickerView.onTouchEvent(event);
+        event.recycle();
+    }
+
+    private static MotionEvent obtain(long downTime, long eventTime, int action, float y) {
+        return MotionEvent.obtain(downTime, eventTime, action, WIDTH / 2.0f, y, 0);
+    }
+
+    private static long median(long[] values, int count) {
+        if (count == 0) return 0;
+        long[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+        return sorted[count / 2];
+    }
+
+    private static String formatBytes(long bytes, int frames) {
+        if (!ALLOCATION_SUPPORTED || frames == 0) return "n/a";
+        return String.format(Locale.US, "%6d B", bytes / frames);
+    }
+
+    /**
+     * @return 当前线程分配的内存(bytes), JVM不支持时为-1
+     */
+    private static long allocatedBytes() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 统计获取文本次数的适配器
+     */
+    private static class CountingAdapter extends NumberPickerAdapter {
+        int mTextCount;
+
+        CountingAdapter(int size) {
+            super(0, size - 1);
+        }
+
+        @Override
+        public String getItemText(int position) {
+            mTextCount++;
+            return super.getItemText(position);
+        }
+    }
+
+    /**
+     * 统计绘制文本次数的Canvas
+     */
+    private static class CountingCanvas extends Canvas {
+        int mDrawCount;
+
+        CountingCanvas() {
+            super(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+        }
+
+        @Override
+        public void drawText(String text, float x, float y, Paint paint) {
+            mDrawCount++;
+            super.drawText(text, x, y, paint);
+        }
+    }
+
+    /**
+     * 一次重放的统计结果
+     */
+    private static class Result {
+        final long[] touchNanos, drawNanos;
+        long touchBytes, drawBytes;
+        int frames, maxDrawn, maxText;
+
+        Result(int maxFrames) {
+            touchNanos = new long[maxFrames];
+            drawNanos = new long[maxFrames];
+        }
+    }
+}
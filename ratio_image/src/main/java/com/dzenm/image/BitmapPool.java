@@ -0,0 +1,103 @@
+package com.dzenm.image;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+
+/**
+ * 不再显示的Bitmap, 解码时通过inBitmap复用它们的内存. 只能放入确定不再绘制的Bitmap,
+ * 例如ImageView替换或者分离时释放的图片, {@link ImageCache}中的图片可能还在其他地方显示, 不能放入
+ *
+ * @author dzenm
+ */
+final class BitmapPool {
+
+    /**
+     * 复用的Bitmap最多比需要的大几倍, 避免小图占用大图的内存
+     */
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    private static BitmapPool sDefault;
+
+    /**
+     * 按放入的顺序保存, 超出大小时移除最早放入的
+     */
+    private final ArrayList<Bitmap> mBitmaps = new ArrayList<>();
+    private final int mMaxSize;
+    private int mSize;
+
+    /**
+     * @return 所有图片共用的复用池, 大小为应用最大内存的1/16
+     */
+    static synchronized BitmapPool getDefault() {
+        if (sDefault == null) {
+            sDefault = new BitmapPool((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16));
+        }
+        return sDefault;
+    }
+
+    /**
+     * @param maxBytes 复用池最多占用的内存(bytes)
+     */
+    BitmapPool(int maxBytes) {
+        mMaxSize = maxBytes;
+    }
+
+    /**
+     * @param bitmap 不再绘制的Bitmap, 不可修改或者已经回收的Bitmap不能复用
+     */
+    synchronized void put(Bitmap bitmap) {
+        if (bitmap.isRecycled() || !bitmap.isMutable()) return;
+        int size = bitmap.getAllocationByteCount();
+        if (size > mMaxSize || mBitmaps.contains(bitmap)) return;
+        mBitmaps.add(bitmap);
+        mSize += size;
+        while (mSize > mMaxSize) {
+            mSize -= mBitmaps.remove(0).getAllocationByteCount();
+        }
+    }
+
+    /**
+     * @return 内存足够解码指定大小的Bitmap, 没有时返回null
+     */
+    @Nullable
+    synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        int required = width * height * getBytesPerPixel(config);
+        int index = -1, bestSize = Integer.MAX_VALUE;
+        for (int i = 0; i < mBitmaps.size(); i++) {
+            Bitmap bitmap = mBitmaps.get(i);
+            int size = bitmap.getAllocationByteCount();
+            if (bitmap.getConfig() == config && size >= required
+                    && size <= required * MAX_SIZE_MULTIPLE && size < bestSize) {
+                index = i;
+                bestSize = size;
+            }
+        }
+        if (index < 0) return null;
+        mSize -= bestSize;
+        return mBitmaps.remove(index);
+    }
+
+    /**
+     * @return 复用池当前占用的内存(bytes)
+     */
+    synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * 内存不足时清空复用池
+     */
+    synchronized void clear() {
+        mBitmaps.clear();
+        mSize = 0;
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) return 2;
+        if (config == Bitmap.Config.ALPHA_8) return 1;
+        return 4;
+    }
+}
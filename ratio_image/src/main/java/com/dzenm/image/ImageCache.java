@@ -0,0 +1,72 @@
+package com.dzenm.image;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * 解码后的Bitmap缓存, 按Bitmap占用的内存计算大小, 超出时移除最久没有使用的Bitmap.
+ * 移除的Bitmap可能仍然在绘制, 不会被回收, 由GC释放
+ *
+ * @author dzenm
+ */
+public final class ImageCache {
+
+    private static ImageCache sDefault;
+
+    private final LruCache<String, Bitmap> mCache;
+
+    /**
+     * @return 所有图片共用的缓存, 大小为应用最大内存的1/8
+     */
+    public static synchronized ImageCache getDefault() {
+        if (sDefault == null) {
+            sDefault = new ImageCache((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8));
+        }
+        return sDefault;
+    }
+
+    /**
+     * @param maxBytes 缓存最多占用的内存(bytes)
+     */
+    public ImageCache(int maxBytes) {
+        mCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    public Bitmap get(String key) {
+        return mCache.get(key);
+    }
+
+    public void put(String key, Bitmap bitmap) {
+        mCache.put(key, bitmap);
+    }
+
+    public void remove(String key) {
+        mCache.remove(key);
+    }
+
+    /**
+     * @return 当前占用的内存(bytes)
+     */
+    public int size() {
+        return mCache.size();
+    }
+
+    /**
+     * @return 最多占用的内存(bytes)
+     */
+    public int maxSize() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * 内存不足时清空缓存
+     */
+    public void evictAll() {
+        mCache.evictAll();
+    }
+}
@@ -0,0 +1,206 @@
+package com.dzenm.image;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.viewpager.widget.PagerAdapter;
+import androidx.viewpager.widget.ViewPager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多张图片的浏览, 每一页是可以缩放的{@link RatioImageView}. 当前页左右的几页会提前解码, 图片缩小到屏幕的大小后解码,
+ * 放在共用的{@link ImageCache}中, 滑动时直接显示. 离开预加载范围的页面取消解码, 页面的View会复用
+ *
+ * @author dzenm
+ */
+public class ImageGalleryView extends ViewPager {
+
+    /**
+     * 当前页每一边最多预加载的页数
+     */
+    private static final int MAX_PREFETCH_COUNT = 3;
+
+    private final List<ImageSource> mSources = new ArrayList<>();
+
+    /**
+     * 当前存在的页面和可以复用的页面
+     */
+    private final List<Page> mPages = new ArrayList<>();
+    private final List<Page> mRecycledPages = new ArrayList<>();
+
+    private Page mPrimaryPage;
+    private ImageCache mCache = ImageCache.getDefault();
+
+    public ImageGalleryView(@NonNull Context context) {
+        this(context, null);
+    }
+
+    public ImageGalleryView(@NonNull Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        setAdapter(new GalleryAdapter());
+    }
+
+    /**
+     * @param sources 显示的图片
+     */
+    public void setImages(List<ImageSource> sources) {
+        mSources.clear();
+        mSources.addAll(sources);
+        getAdapter().notifyDataSetChanged();
+    }
+
+    /**
+     * @param count 当前页每一边预加载的页数, 默认为1, 最多为{@link #MAX_PREFETCH_COUNT}
+     */
+    public void setPrefetchCount(int count) {
+        setOffscreenPageLimit(Math.max(1, Math.min(MAX_PREFETCH_COUNT, count)));
+    }
+
+    /**
+     * @param cache 解码后图片的缓存, 默认为{@link ImageCache#getDefault()}
+     */
+    public void setImageCache(ImageCache cache) {
+        mCache = cache;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        // 分离时取消的解码重新开始
+        for (Page page : mPages) {
+            if (page.task == null && page.view.getDrawable() == null) loadPage(page);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        for (Page page : mPages) {
+            cancelPage(page);
+        }
+    }
+
+    /**
+     * 显示缓存中的图片, 没有缓存时在子线程解码
+     */
+    private void loadPage(final Page page) {
+        cancelPage(page);
+        int width = getDecodeWidth(), height = getDecodeHeight();
+        Bitmap cached = ImageLoader.getCached(mCache, page.source, width, height);
+        if (cached != null) {
+            page.view.setImageBitmap(cached);
+            return;
+        }
+        page.view.setImageDrawable(null);
+        page.task = ImageLoader.load(page.source, width, height, mCache, new ImageLoader.Callback() {
+            @Override
+            public void onLoaded(@Nullable Bitmap bitmap) {
+                page.task = null;
+                if (bitmap != null) page.view.setImageBitmap(bitmap);
+            }
+        });
+    }
+
+    private void cancelPage(Page page) {
+        if (page.task != null) {
+            page.task.cancel();
+            page.task = null;
+        }
+    }
+
+    /**
+     * 还原页面的缩放
+     */
+    private static void resetZoom(Page page) {
+        // 先替换ImageZoomHelper停止之前的动画, 动画不会再修改还原后的Matrix
+        page.view.setImageZoomHelper(new ImageZoomHelper());
+        page.view.setScaleType(ImageView.ScaleType.FIT_CENTER);
+    }
+
+    /**
+     * @return 解码的目标宽度, 始终使用屏幕宽度, 布局前后缓存的key相同
+     */
+    private int getDecodeWidth() {
+        return getResources().getDisplayMetrics().widthPixels;
+    }
+
+    private int getDecodeHeight() {
+        return getResources().getDisplayMetrics().heightPixels;
+    }
+
+    /**
+     * 一个页面, 包含显示的View和正在解码的任务
+     */
+    private static final class Page {
+        RatioImageView view;
+        ImageSource source;
+        ImageLoader.Task task;
+    }
+
+    private final class GalleryAdapter extends PagerAdapter {
+
+        @Override
+        public int getCount() {
+            return mSources.size();
+        }
+
+        @NonNull
+        @Override
+        public Object instantiateItem(@NonNull ViewGroup container, int position) {
+            Page page;
+            if (mRecycledPages.isEmpty()) {
+                page = new Page();
+                page.view = new RatioImageView(container.getContext());
+                page.view.setPreview(true);
+            } else {
+                page = mRecycledPages.remove(mRecycledPages.size() - 1);
+            }
+            resetZoom(page);
+            page.source = mSources.get(position);
+            container.addView(page.view);
+            mPages.add(page);
+            loadPage(page);
+            return page;
+        }
+
+        @Override
+        public void destroyItem(@NonNull ViewGroup container, int position, @NonNull Object object) {
+            Page page = (Page) object;
+            cancelPage(page);
+            page.view.setImageDrawable(null);
+            page.source = null;
+            container.removeView(page.view);
+            mPages.remove(page);
+            mRecycledPages.add(page);
+            if (mPrimaryPage == page) mPrimaryPage = null;
+        }
+
+        @Override
+        public void setPrimaryItem(@NonNull ViewGroup container, int position, @NonNull Object object) {
+            // 滑动到其他页面后还原上一页的缩放
+            if (object != mPrimaryPage) {
+                if (mPrimaryPage != null) resetZoom(mPrimaryPage);
+                mPrimaryPage = (Page) object;
+            }
+        }
+
+        @Override
+        public boolean isViewFromObject(@NonNull View view, @NonNull Object object) {
+            return ((Page) object).view == view;
+        }
+
+        @Override
+        public int getItemPosition(@NonNull Object object) {
+            // 图片改变后重新创建所有的页面
+            return POSITION_NONE;
+        }
+    }
+}
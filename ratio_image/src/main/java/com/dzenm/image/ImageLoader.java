@@ -0,0 +1,208 @@
+package com.dzenm.image;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Future;
+
+/**
+ * 在子线程按照目标大小缩小解码图片, 解码后放入{@link ImageCache}, 在主线程回调. 同一张图片不同的目标大小分别缓存.
+ * 也可以不缓存, 通过{@link BitmapPool}复用不再显示的Bitmap的内存
+ *
+ * @author dzenm
+ */
+final class ImageLoader {
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private ImageLoader() {
+    }
+
+    /**
+     * @return 缩小到目标大小的图片在缓存中的key
+     */
+    static String getKey(ImageSource source, int width, int height) {
+        return source.getKey() + "@" + width + "x" + height;
+    }
+
+    /**
+     * @return 缓存中已经解码的图片, 没有时返回null
+     */
+    @Nullable
+    static Bitmap getCached(ImageCache cache, ImageSource source, int width, int height) {
+        return cache.get(getKey(source, width, height));
+    }
+
+    /**
+     * 在子线程解码图片, 已经缓存时也在主线程回调
+     *
+     * @param source   图片的来源
+     * @param width    目标宽度, 解码后的图片不小于目标大小
+     * @param height   目标高度
+     * @param cache    解码后图片的缓存
+     * @param callback 在主线程回调, 解码失败时为null, 取消后不会回调
+     * @return 解码的任务, 用于取消
+     */
+    static Task load(ImageSource source, int width, int height, ImageCache cache, Callback callback) {
+        return load(source, width, height, cache, null, callback);
+    }
+
+    /**
+     * 在子线程解码图片, 可以复用{@link BitmapPool}中的Bitmap. 复用的图片不能放入缓存, 因此cache和pool只能设置一个
+     *
+     * @param source   图片的来源
+     * @param width    目标宽度, 解码后的图片不小于目标大小
+     * @param height   目标高度
+     * @param cache    解码后图片的缓存, 为null时不缓存
+     * @param pool     解码时复用的Bitmap, 为null时不复用. 解码后的图片由调用方独占, 不再显示时放回复用池
+     * @param callback 在主线程回调, 解码失败时为null, 取消后不会回调, 复用池中的图片取消后放回复用池
+     * @return 解码的任务, 用于取消
+     */
+    static Task load(final ImageSource source, final int width, final int height,
+                     @Nullable final ImageCache cache, @Nullable final BitmapPool pool, final Callback callback) {
+        final Task task = new Task();
+        task.mFuture = DecodeExecutor.get().submit(new Runnable() {
+            @Override
+            public void run() {
+                final String key = getKey(source, width, height);
+                Bitmap bitmap = cache == null ? null : cache.get(key);
+                if (bitmap == null && !task.isCancelled) {
+                    try {
+                        bitmap = decode(source, width, height, pool);
+                    } catch (IOException e) {
+                        bitmap = null;
+                    }
+                    if (bitmap != null && cache != null) cache.put(key, bitmap);
+                }
+                final Bitmap result = bitmap;
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!task.isCancelled) {
+                            callback.onLoaded(result);
+                        } else if (result != null && pool != null) {
+                            pool.put(result);
+                        }
+                    }
+                });
+            }
+        });
+        return task;
+    }
+
+    /**
+     * 先读取图片的大小, 再按照采样率解码, 需要在子线程调用
+     *
+     * @return 解码后的图片, 不能解码时返回null
+     */
+    @Nullable
+    static Bitmap decode(ImageSource source, int width, int height) throws IOException {
+        return decode(source, width, height, null);
+    }
+
+    /**
+     * 先读取图片的大小, 再按照采样率解码, 需要在子线程调用
+     *
+     * @param pool 解码时复用的Bitmap, 为null时不复用, 不为null时解码后的图片是可修改的
+     * @return 解码后的图片, 不能解码时返回null
+     */
+    @Nullable
+    static Bitmap decode(ImageSource source, int width, int height, @Nullable BitmapPool pool) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(source, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+        if (Thread.currentThread().isInterrupted()) return null;
+
+        options.inJustDecodeBounds = false;
+        int sampleSize = computeSampleSize(options.outWidth, options.outHeight, width, height);
+        options.inSampleSize = sampleSize;
+        // 没有透明通道的JPEG使用RGB_565, 内存减半
+        if ("image/jpeg".equals(options.outMimeType)) {
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+        }
+        if (pool != null) {
+            // 采样后的大小向上取整, 保证复用的Bitmap足够大
+            options.inMutable = true;
+            options.inBitmap = pool.get((options.outWidth + sampleSize - 1) / sampleSize,
+                    (options.outHeight + sampleSize - 1) / sampleSize, options.inPreferredConfig);
+        }
+        Bitmap bitmap;
+        try {
+            bitmap = decodeStream(source, options);
+        } catch (IllegalArgumentException e) {
+            // 复用的Bitmap不能用于这张图片, 不复用重新解码
+            bitmap = null;
+        } catch (IOException | RuntimeException e) {
+            // 打开或者解码失败时复用的Bitmap放回复用池
+            if (options.inBitmap != null) pool.put(options.inBitmap);
+            throw e;
+        }
+        if (bitmap == null && options.inBitmap != null) {
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            bitmap = decodeStream(source, options);
+        }
+        return bitmap;
+    }
+
+    private static Bitmap decodeStream(ImageSource source, BitmapFactory.Options options) throws IOException {
+        InputStream input = source.open();
+        try {
+            return BitmapFactory.decodeStream(input, null, options);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * @param srcWidth  原图的宽度
+     * @param srcHeight 原图的高度
+     * @param reqWidth  目标宽度, 小于等于0时不限制
+     * @param reqHeight 目标高度, 小于等于0时不限制
+     * @return 解码后宽高都不小于目标大小的最大采样率, 为2的幂
+     */
+    static int computeSampleSize(int srcWidth, int srcHeight, int reqWidth, int reqHeight) {
+        if (reqWidth <= 0 && reqHeight <= 0) return 1;
+        int sampleSize = 1;
+        while ((reqWidth <= 0 || srcWidth / (sampleSize * 2) >= reqWidth)
+                && (reqHeight <= 0 || srcHeight / (sampleSize * 2) >= reqHeight)) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * 解码完成的回调
+     */
+    interface Callback {
+
+        /**
+         * @param bitmap 解码后的图片, 解码失败时为null
+         */
+        void onLoaded(@Nullable Bitmap bitmap);
+    }
+
+    /**
+     * 解码的任务, 取消后不会回调
+     */
+    static final class Task {
+
+        private volatile boolean isCancelled;
+        private Future<?> mFuture;
+
+        /**
+         * 取消解码, 只能在主线程调用
+         */
+        void cancel() {
+            isCancelled = true;
+            if (mFuture != null) mFuture.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.dzenm.image;
+
+import android.content.Context;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 图片的来源, 可以是Uri, 文件或者资源, 解码时在子线程打开输入流. key用于缓存解码后的图片
+ *
+ * @author dzenm
+ */
+public abstract class ImageSource {
+
+    private final String mKey;
+
+    private ImageSource(String key) {
+        mKey = key;
+    }
+
+    /**
+     * @param context 用于获取ContentResolver
+     * @param uri     图片的Uri, 支持content, file和android.resource
+     * @return Uri对应的图片来源
+     */
+    public static ImageSource uri(Context context, final Uri uri) {
+        final Context appContext = context.getApplicationContext();
+        return new ImageSource("uri:" + uri) {
+            @Override
+            InputStream open() throws IOException {
+                InputStream input = appContext.getContentResolver().openInputStream(uri);
+                if (input == null) throw new IOException("Unable to open " + uri);
+                return input;
+            }
+        };
+    }
+
+    /**
+     * @param file 图片文件
+     * @return 文件对应的图片来源, 文件修改后key也会改变
+     */
+    public static ImageSource file(final File file) {
+        return new ImageSource("file:" + file.getAbsolutePath() + "@" + file.lastModified()) {
+            @Override
+            InputStream open() throws IOException {
+                return new FileInputStream(file);
+            }
+        };
+    }
+
+    /**
+     * @param context 用于获取Resources
+     * @param resId   图片资源的id, 必须是位图资源
+     * @return 资源对应的图片来源
+     */
+    public static ImageSource resource(Context context, final int resId) {
+        final Context appContext = context.getApplicationContext();
+        return new ImageSource("res:" + appContext.getPackageName() + "/" + resId) {
+            @Override
+            InputStream open() {
+                return appContext.getResources().openRawResource(resId);
+            }
+        };
+    }
+
+    /**
+     * @return 缓存使用的key, 同一张图片的key相同
+     */
+    public String getKey() {
+        return mKey;
+    }
+
+    /**
+     * 打开图片的输入流, 在子线程调用, 调用方负责关闭
+     */
+    abstract InputStream open() throws IOException;
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ImageSource && mKey.equals(((ImageSource) o).mKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return mKey.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mKey;
+    }
+}
@@ -1,11 +1,22 @@
 package com.dzenm.image;
 
 import android.graphics.Matrix;
-import android.graphics.PointF;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.view.GestureDetector;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.animation.AnimationUtils;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
 import android.widget.ImageView;
+import android.widget.OverScroller;
 
 /**
+ * 图片的缩放和移动, 单指拖动, 双指以手指中心为焦点缩放并跟随中心移动, 抬起后惯性滑动, 双击以点击位置为焦点放大或者还原.
+ * 图片比View大时不能拖出View的边缘, 比View小时居中. 处理触摸事件时不分配内存,
+ * 当前的缩放系数在Matrix改变时更新, 只有Matrix改变时才设置给ImageView
+ *
  * @author dzenm
  * @date 2019-10-10 16:42
  */
@@ -18,110 +29,403 @@ public class ImageZoomHelper {
     private static final float MAX_SCALE = 3;
 
     /**
-     * 设定第一个手指触摸屏幕为移动图片的参考点
+     * 双击放大的倍数, 相对于初始的缩放系数
      */
-    private PointF mMovePoint = new PointF();
+    private static final float DOUBLE_TAP_SCALE = 2;
 
     /**
-     * 初始的两个手指按下的触摸点的距离
+     * 双击缩放动画的时长
      */
-    private float mPointDistance = 1f, mMinScale;
+    private static final int ZOOM_DURATION = 250;
+
+    /**
+     * 上一次拖动的参考点
+     */
+    private float mLastX, mLastY;
+
+    /**
+     * 拖动使用的手指
+     */
+    private int mActivePointerId = MotionEvent.INVALID_POINTER_ID;
+
+    /**
+     * 初始的缩放系数和当前的缩放系数
+     */
+    private float mMinScale, mCurrentScale;
 
     private int mMode = NONE;
 
     private boolean isDefaultMatrix = true;
 
-    private Matrix mMatrix = new Matrix();
-    private Matrix mSavedMatrix = new Matrix();
+    /**
+     * Matrix是否已经改变, 还没有设置给ImageView
+     */
+    private boolean isMatrixDirty;
+
+    private final Matrix mMatrix = new Matrix();
+
+    /**
+     * 读取Matrix的值时复用的数组
+     */
+    private final float[] mValues = new float[9];
+
+    /**
+     * 图片在View中的区域, 由Drawable的大小经过Matrix计算
+     */
+    private final RectF mImageRect = new RectF();
+    private final RectF mViewRect = new RectF();
 
     private ImageView mImageView;
 
+    /**
+     * 绑定时的图片, 图片改变后重新计算初始的缩放系数
+     */
+    private Drawable mDrawable;
+
+    private ScaleGestureDetector mScaleDetector;
+    private GestureDetector mGestureDetector;
+
+    /**
+     * 上一次缩放的焦点, 缩放时焦点的移动转换为图片的移动
+     */
+    private float mLastFocusX, mLastFocusY;
+
+    /**
+     * 惯性滑动, 由动画帧驱动
+     */
+    private OverScroller mScroller;
+    private int mLastScrollX, mLastScrollY;
+    private boolean isFlinging;
+
+    /**
+     * 双击缩放动画的开始时间, 开始和目标缩放系数, 焦点
+     */
+    private boolean isZooming;
+    private long mZoomStartTime;
+    private float mZoomFromScale, mZoomToScale, mZoomFocusX, mZoomFocusY;
+    private final Interpolator mZoomInterpolator = new DecelerateInterpolator();
+
+    private final Runnable mAnimationRunnable = new Runnable() {
+        @Override
+        public void run() {
+            boolean running = false;
+            if (isFlinging) running = computeFling();
+            if (isZooming) running |= computeZoom();
+            applyMatrix();
+            if (running) mImageView.postOnAnimation(this);
+        }
+    };
+
+    private final ScaleGestureDetector.SimpleOnScaleGestureListener mScaleListener =
+            new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                @Override
+                public boolean onScaleBegin(ScaleGestureDetector detector) {
+                    mMode = ZOOM;
+                    mLastFocusX = detector.getFocusX();
+                    mLastFocusY = detector.getFocusY();
+                    return true;
+                }
+
+                @Override
+                public boolean onScale(ScaleGestureDetector detector) {
+                    float focusX = detector.getFocusX(), focusY = detector.getFocusY();
+                    float scale = detector.getScaleFactor();
+                    if (scale * mCurrentScale > MAX_SCALE) {
+                        scale = MAX_SCALE / mCurrentScale;
+                    } else if (scale * mCurrentScale < mMinScale) {
+                        scale = mMinScale / mCurrentScale;
+                    }
+                    if (scale != 1) {
+                        mMatrix.postScale(scale, scale, focusX, focusY);
+                        isMatrixDirty = true;
+                    }
+                    // 双指缩放的同时跟随手指中心移动
+                    if (focusX != mLastFocusX || focusY != mLastFocusY) {
+                        mMatrix.postTranslate(focusX - mLastFocusX, focusY - mLastFocusY);
+                        isMatrixDirty = true;
+                    }
+                    mLastFocusX = focusX;
+                    mLastFocusY = focusY;
+                    updateCurrentScale();
+                    clampMatrix();
+                    return true;
+                }
+
+                @Override
+                public void onScaleEnd(ScaleGestureDetector detector) {
+                    mMode = NONE;
+                }
+            };
+
+    private final GestureDetector.SimpleOnGestureListener mGestureListener =
+            new GestureDetector.SimpleOnGestureListener() {
+                @Override
+                public boolean onDoubleTap(MotionEvent e) {
+                    // 放大后双击还原, 否则以点击位置为焦点放大
+                    float target = mCurrentScale > mMinScale * 1.01f
+                            ? mMinScale : Math.min(MAX_SCALE, mMinScale * DOUBLE_TAP_SCALE);
+                    startZoom(target, e.getX(), e.getY());
+                    return true;
+                }
+
+                @Override
+                public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+                    if (mScaleDetector.isInProgress() || mCurrentScale == mMinScale) return false;
+                    startFling((int) velocityX, (int) velocityY);
+                    return true;
+                }
+            };
+
     void bindImageView(ImageView imageView, MotionEvent event) {
         if (isDefaultMatrix) {
             mImageView = imageView;
-            mMinScale = getScale(mImageView.getImageMatrix());
+            mScaleDetector = new ScaleGestureDetector(imageView.getContext(), mScaleListener);
+            mGestureDetector = new GestureDetector(imageView.getContext(), mGestureListener);
+            mScroller = new OverScroller(imageView.getContext());
+            mDrawable = imageView.getDrawable();
+            mMatrix.set(mImageView.getImageMatrix());
+            updateCurrentScale();
+            mMinScale = mCurrentScale;
             isDefaultMatrix = false;
+        } else if (imageView.getDrawable() != mDrawable) {
+            // 图片改变后按照新图片的大小居中显示
+            mDrawable = imageView.getDrawable();
+            resetMatrix();
         }
         setTouchEvent(event);
     }
 
     private void setTouchEvent(MotionEvent event) {
+        // 第一个手指按下时先停止惯性滑动和缩放动画, 再交给手势检测, 避免双击第二次按下时开始的缩放动画被停止
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) stopAnimation();
+        mScaleDetector.onTouchEvent(event);
+        mGestureDetector.onTouchEvent(event);
+
         // 进行与操作是为了判断多点触摸
         switch (event.getAction() & MotionEvent.ACTION_MASK) {
             case MotionEvent.ACTION_DOWN:
-                // 第一个手指按下事件, 将ImageView设置为缩放模式, 获取原始的缩放系数
-                mImageView.setScaleType(ImageView.ScaleType.MATRIX);
-                mMatrix.set(mImageView.getImageMatrix());
-
-                // 保存缩放前的Matrix和X轴, y轴坐标点
-                mSavedMatrix.set(mMatrix);
-                mMovePoint.set(event.getX(), event.getY());
-
-                // 设置为开始缩放模式
+                // 第一个手指按下事件, 将ImageView设置为缩放模式
+                if (mImageView.getScaleType() != ImageView.ScaleType.MATRIX) {
+                    mImageView.setScaleType(ImageView.ScaleType.MATRIX);
+                    isMatrixDirty = true;
+                }
+                mActivePointerId = event.getPointerId(0);
+                mLastX = event.getX();
+                mLastY = event.getY();
                 mMode = DRAG;
                 break;
-            case MotionEvent.ACTION_POINTER_DOWN:
-                // 第二个手指按下, 两指之间的距离超过10时设置为缩放事件
-                mPointDistance = getPointDistance(event);
-                if (mPointDistance > 10f) {
-                    mMode = ZOOM;
+            case MotionEvent.ACTION_POINTER_UP:
+                // 拖动的手指抬起时使用另一个手指继续拖动, 避免图片跳动
+                int actionIndex = event.getActionIndex();
+                if (event.getPointerId(actionIndex) == mActivePointerId) {
+                    int newIndex = actionIndex == 0 ? 1 : 0;
+                    mActivePointerId = event.getPointerId(newIndex);
+                    mLastX = event.getX(newIndex);
+                    mLastY = event.getY(newIndex);
                 }
                 break;
-            case MotionEvent.ACTION_POINTER_UP:
             case MotionEvent.ACTION_UP:
-                float upMatrix = getScale(mMatrix);
-                if (upMatrix == mMinScale) {
-                    mMatrix.postTranslate(0, 0);
-                }
+            case MotionEvent.ACTION_CANCEL:
                 // 手指放开事件, 重置为初始事件
+                mActivePointerId = MotionEvent.INVALID_POINTER_ID;
                 mMode = NONE;
                 break;
             case MotionEvent.ACTION_MOVE:
-                // 手指滑动事件
-                if (mMode == DRAG) {
-                    // 一个手指拖动时, 并且当前缩放系数不等于初始缩放系数时进行移动
-                    mMatrix.set(mSavedMatrix);
-                    float scale = getScale(mMatrix);
-                    if (scale != mMinScale) {
-                        mMatrix.postTranslate(event.getX() - mMovePoint.x, event.getY() - mMovePoint.y);
-                    }
-                } else if (mMode == ZOOM) {
-                    // 两个手指滑动之后的新距离
-                    float newDistance = getPointDistance(event);
-                    if (newDistance > 10f) {
-                        mMatrix.set(mSavedMatrix);
-                        float scale = newDistance / mPointDistance;
-                        float matrixScale = getScale(mMatrix);
-
-                        if (scale * matrixScale > MAX_SCALE) {
-                            scale = MAX_SCALE / matrixScale;
-                        } else if (scale * matrixScale < mMinScale) {
-                            scale = mMinScale / matrixScale;
-                        }
-                        mMatrix.postScale(scale, scale, mImageView.getWidth() / 2, mImageView.getHeight() / 2);
-                    }
+                int index = event.findPointerIndex(mActivePointerId);
+                if (index < 0) break;
+                float x = event.getX(index), y = event.getY(index);
+                // 一个手指拖动时, 并且当前缩放系数不等于初始缩放系数时进行移动
+                if (mMode != ZOOM && !mScaleDetector.isInProgress() && mCurrentScale != mMinScale) {
+                    mMatrix.postTranslate(x - mLastX, y - mLastY);
+                    isMatrixDirty = true;
+                    clampMatrix();
                 }
+                mLastX = x;
+                mLastY = y;
                 break;
         }
-        // 重新设置ImageView的缩放系数
-        mImageView.setImageMatrix(mMatrix);
+        applyMatrix();
     }
 
-    private float getScale(Matrix matrix) {
-        float[] values = new float[9];
-        matrix.getValues(values);
-        return values[Matrix.MSCALE_X];
+    /**
+     * 图片放大后还能继续向某个方向拖动时, 父布局(例如ViewPager)不应该拦截拖动
+     *
+     * @param direction 负数表示向左拖动查看左边, 正数表示查看右边
+     * @return 图片在这个方向上是否还有没显示的部分
+     */
+    boolean canScrollHorizontally(int direction) {
+        if (mImageView == null || mImageView.getScaleType() != ImageView.ScaleType.MATRIX
+                || !getImageRect(mMatrix)) {
+            return false;
+        }
+        return direction < 0 ? mImageRect.left < -0.5f : mImageRect.right > getViewWidth() + 0.5f;
+    }
+
+    /**
+     * 只有Matrix改变时才重新设置ImageView的Matrix
+     */
+    private void applyMatrix() {
+        if (isMatrixDirty) {
+            isMatrixDirty = false;
+            mImageView.setImageMatrix(mMatrix);
+        }
     }
 
     /**
-     * 获取两个触摸点之间的距离
+     * 图片居中并完整显示在View中
+     */
+    private void resetMatrix() {
+        stopAnimation();
+        if (mDrawable == null || !getImageRect(null)) {
+            mMatrix.reset();
+        } else {
+            mImageRect.set(mDrawable.getBounds());
+            mViewRect.set(0, 0, getViewWidth(), getViewHeight());
+            mMatrix.setRectToRect(mImageRect, mViewRect, Matrix.ScaleToFit.CENTER);
+        }
+        updateCurrentScale();
+        mMinScale = mCurrentScale;
+        isMatrixDirty = true;
+    }
+
+    /**
+     * 限制图片的位置, 图片比View大时不能露出View的边缘, 比View小时居中
+     */
+    private void clampMatrix() {
+        if (!getImageRect(mMatrix)) return;
+        float dx = getClampOffset(mImageRect.left, mImageRect.right, getViewWidth());
+        float dy = getClampOffset(mImageRect.top, mImageRect.bottom, getViewHeight());
+        if (dx != 0 || dy != 0) {
+            mMatrix.postTranslate(dx, dy);
+            isMatrixDirty = true;
+        }
+    }
+
+    /**
+     * @return 图片的一个方向需要移动的距离
+     */
+    private static float getClampOffset(float start, float end, int viewSize) {
+        float size = end - start;
+        if (size <= viewSize) return (viewSize - size) / 2 - start;
+        if (start > 0) return -start;
+        if (end < viewSize) return viewSize - end;
+        return 0;
+    }
+
+    /**
+     * 计算图片在View中的区域
      *
-     * @param event 触摸事件
-     * @return 两个触摸点之间的距离
+     * @param matrix 图片的Matrix, 为null时只判断是否有图片
+     * @return 是否有图片
+     */
+    private boolean getImageRect(Matrix matrix) {
+        Drawable drawable = mImageView.getDrawable();
+        if (drawable == null || drawable.getBounds().isEmpty()) return false;
+        if (matrix != null) {
+            mImageRect.set(drawable.getBounds());
+            matrix.mapRect(mImageRect);
+        }
+        return true;
+    }
+
+    /**
+     * 惯性滑动, 只能滑动到图片的边缘
+     */
+    private void startFling(int velocityX, int velocityY) {
+        if (!getImageRect(mMatrix)) return;
+        int viewWidth = getViewWidth(), viewHeight = getViewHeight();
+        int minX = 0, maxX = 0, minY = 0, maxY = 0;
+        if (mImageRect.width() > viewWidth) {
+            minX = Math.round(viewWidth - mImageRect.right);
+            maxX = Math.round(-mImageRect.left);
+        }
+        if (mImageRect.height() > viewHeight) {
+            minY = Math.round(viewHeight - mImageRect.bottom);
+            maxY = Math.round(-mImageRect.top);
+        }
+        if (minX == maxX && minY == maxY) return;
+        mLastScrollX = mLastScrollY = 0;
+        mScroller.fling(0, 0, velocityX, velocityY, minX, maxX, minY, maxY);
+        isFlinging = true;
+        mImageView.postOnAnimation(mAnimationRunnable);
+    }
+
+    /**
+     * @return 惯性滑动是否还在继续
      */
-    private float getPointDistance(MotionEvent event) {
-        float x = event.getX(0) - event.getX(1);
-        float y = event.getY(0) - event.getY(1);
-        return (float) Math.sqrt(x * x + y * y);
+    private boolean computeFling() {
+        if (!mScroller.computeScrollOffset()) {
+            isFlinging = false;
+            return false;
+        }
+        int x = mScroller.getCurrX(), y = mScroller.getCurrY();
+        if (x != mLastScrollX || y != mLastScrollY) {
+            mMatrix.postTranslate(x - mLastScrollX, y - mLastScrollY);
+            isMatrixDirty = true;
+            clampMatrix();
+        }
+        mLastScrollX = x;
+        mLastScrollY = y;
+        return true;
+    }
+
+    /**
+     * 以焦点为中心的缩放动画
+     */
+    private void startZoom(float targetScale, float focusX, float focusY) {
+        stopAnimation();
+        mZoomFromScale = mCurrentScale;
+        mZoomToScale = targetScale;
+        mZoomFocusX = focusX;
+        mZoomFocusY = focusY;
+        mZoomStartTime = AnimationUtils.currentAnimationTimeMillis();
+        isZooming = true;
+        mImageView.postOnAnimation(mAnimationRunnable);
+    }
+
+    /**
+     * @return 缩放动画是否还在继续
+     */
+    private boolean computeZoom() {
+        float fraction = Math.min(1f, (AnimationUtils.currentAnimationTimeMillis() - mZoomStartTime) / (float) ZOOM_DURATION);
+        float scale = mZoomFromScale + (mZoomToScale - mZoomFromScale) * mZoomInterpolator.getInterpolation(fraction);
+        float delta = scale / mCurrentScale;
+        if (delta != 1) {
+            mMatrix.postScale(delta, delta, mZoomFocusX, mZoomFocusY);
+            isMatrixDirty = true;
+            updateCurrentScale();
+        }
+        clampMatrix();
+        isZooming = fraction < 1;
+        return isZooming;
+    }
+
+    /**
+     * 停止惯性滑动和缩放动画, 替换ImageZoomHelper时也需要停止
+     */
+    void stopAnimation() {
+        if (isFlinging) {
+            mScroller.forceFinished(true);
+            isFlinging = false;
+        }
+        isZooming = false;
+        if (mImageView != null) mImageView.removeCallbacks(mAnimationRunnable);
+    }
+
+    private int getViewWidth() {
+        return mImageView.getWidth() - mImageView.getPaddingLeft() - mImageView.getPaddingRight();
+    }
+
+    private int getViewHeight() {
+        return mImageView.getHeight() - mImageView.getPaddingTop() - mImageView.getPaddingBottom();
+    }
+
+    private void updateCurrentScale() {
+        mCurrentScale = getScale(mMatrix);
+    }
+
+    private float getScale(Matrix matrix) {
+        matrix.getValues(mValues);
+        return mValues[Matrix.MSCALE_X];
     }
 }
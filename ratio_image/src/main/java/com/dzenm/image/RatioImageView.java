@@ -4,27 +4,107 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Outline;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
 import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.util.TypedValue;
+import android.view.Choreographer;
 import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewOutlineProvider;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.widget.AppCompatImageView;
 import androidx.core.view.ViewCompat;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Future;
+
 public class RatioImageView extends AppCompatImageView {
 
+    /**
+     * 自动选择绘制方式, 圆形或者四个圆角相同时使用{@link #RENDER_MODE_OUTLINE}, 否则图片为BitmapDrawable时
+     * 使用{@link #RENDER_MODE_SHADER}, 其他情况使用{@link #RENDER_MODE_LAYER}
+     */
+    public static final int RENDER_MODE_AUTO = 0;
+
+    /**
+     * 绘制到离屏缓冲后用DST_OUT擦除圆角外的部分, 支持任意的圆角, 每一帧都需要分配离屏缓冲
+     */
+    public static final int RENDER_MODE_LAYER = 1;
+
+    /**
+     * 通过ViewOutlineProvider和setClipToOutline由硬件加速裁剪, 不需要离屏缓冲, 只支持圆形和四个圆角相同的圆角矩形,
+     * 不满足或者软件绘制时使用{@link #RENDER_MODE_LAYER}
+     */
+    public static final int RENDER_MODE_OUTLINE = 2;
+
+    /**
+     * 通过BitmapShader按照图片的Matrix直接绘制圆形或者圆角矩形, 不需要离屏缓冲, 支持四个不同的圆角, 背景不会被裁剪.
+     * 图片不是BitmapDrawable, 设置了tint或者Matrix有旋转时使用{@link #RENDER_MODE_LAYER}
+     */
+    public static final int RENDER_MODE_SHADER = 3;
+
+    private static final String TAG = RatioImageView.class.getSimpleName();
+
+    /**
+     * 子线程的结果通过主线程的Handler返回, View分离后post的任务要等到再次添加才会执行
+     */
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private static final PorterDuffXfermode DST_OUT = new PorterDuffXfermode(PorterDuff.Mode.DST_OUT);
+
+    /**
+     * 圆形或者四个圆角相同的圆角矩形的Outline
+     */
+    private static final ViewOutlineProvider SHAPE_OUTLINE_PROVIDER = new ViewOutlineProvider() {
+        @Override
+        public void getOutline(View view, Outline outline) {
+            RatioImageView imageView = (RatioImageView) view;
+            int w = view.getWidth(), h = view.getHeight();
+            if (imageView.isCircle) {
+                int size = Math.min(w, h);
+                int left = (w - size) / 2, top = (h - size) / 2;
+                outline.setOval(left, top, left + size, top + size);
+            } else {
+                outline.setRoundRect(0, 0, w, h, imageView.mCornerRadius[0]);
+            }
+        }
+    };
+
     private final int[] mCornerRadius = new int[4];   // 四个角的圆角大小, 分别为左上, 右上, 右下, 左下
     private boolean isCircle;                         // 是否为圆形
-    private final Path mPath, mTargetPath;            // 原图片大小的Path和目标图片的Path
-    private RectF mOriginRectF;                       // 原图片区域的大小
+    private final Path mShapePath, mOutsidePath;      // 目标图片的Path和目标图片以外的Path
+    private boolean isPathDirty = true;               // 大小或者圆角改变后需要重新创建Path
+    private final RectF mOriginRectF = new RectF();   // 原图片区域的大小
+    private int mRenderMode = RENDER_MODE_AUTO;       // 绘制方式
+    private ViewOutlineProvider mReplacedOutlineProvider; // 通过Outline裁剪前的OutlineProvider, 不再裁剪时恢复
+    private final Paint mClipPaint;                   // 擦除圆角外部分的画笔
+
+    private final Paint mShaderPaint;                 // 使用BitmapShader绘制图片的画笔
+    private BitmapShader mBitmapShader;               // 图片的BitmapShader, 图片改变时重新创建
+    private Bitmap mShaderBitmap;                     // BitmapShader对应的图片
+    private final Matrix mShaderMatrix = new Matrix();// 图片像素到View坐标的Matrix
+    private final RectF mImageRectF = new RectF();    // 图片在View中的区域
+    private boolean isShaderDrawing;                  // 当前帧是否使用BitmapShader绘制
 
     private boolean isMask;                           // 是否按压有灰色阴影
 
@@ -32,6 +112,7 @@ public class RatioImageView extends AppCompatImageView {
     private int mForegroundColor;                     // 点击反馈时的前景颜色
 
     private int mNumber;                              // 数量文本显示剩余的数量
+    private String mNumberText;                       // 显示的数量文本
     private int mNumberColor;                         // 显示文字的颜色
     private final int mNumberMaskColor;               // 默认的遮盖颜色
     private float mNumberSize;                        // 显示文字的大小单位sp
@@ -41,11 +122,56 @@ public class RatioImageView extends AppCompatImageView {
     private ImageZoomHelper mImageZoomHelper;         // 设置图片可以缩放和移动
     private boolean isPreview;
 
+    private ImageSource mTiledSource;                 // 等待打开的分块图片, 打开后为null, 分离时取消的打开在添加后重新开始
+    private Future<?> mTiledLoad;                     // 正在打开的分块图片
+    private TiledImageDrawable mTiledDrawable;        // 显示的分块图片, 替换后释放解码器
+    private boolean isSettingTiledImage;              // 正在设置打开的分块图片, 不取消打开
+    private int mTiledLoadGeneration;                 // 打开分块图片的次数, 重新设置图片后丢弃之前的结果
+    private final float[] mMatrixValues = new float[9]; // 读取图片Matrix时复用的数组
+    private Matrix mImageMatrix;                      // 缓存的图片Matrix, 没有Matrix时getImageMatrix()每次都会创建新的
+    private boolean isImageMatrixDirty = true;        // 图片, 大小, 缩放方式或者Matrix改变后重新获取
+
+    private ImageSource mImageSource;                 // 异步加载的图片来源
+    private ImageLoader.Task mImageLoad;              // 正在异步加载的任务
+    private Bitmap mLoadedBitmap;                     // 异步加载的图片, 由ImageView独占, 不再显示时放回BitmapPool
+    private boolean isSettingLoadedImage;             // 正在设置异步加载的图片, 不取消加载
+
     /**
      * @param circle 是否设置为圆形
      */
     public void setCircle(boolean circle) {
         isCircle = circle;
+        onShapeChanged();
+    }
+
+    /**
+     * @param radius 四个角的圆角大小(px)
+     */
+    public void setCornerRadius(int radius) {
+        setCornerRadius(radius, radius, radius, radius);
+    }
+
+    /**
+     * @param topLeft     左上角的圆角大小(px)
+     * @param topRight    右上角的圆角大小(px)
+     * @param bottomRight 右下角的圆角大小(px)
+     * @param bottomLeft  左下角的圆角大小(px)
+     */
+    public void setCornerRadius(int topLeft, int topRight, int bottomRight, int bottomLeft) {
+        mCornerRadius[0] = topLeft;
+        mCornerRadius[1] = topRight;
+        mCornerRadius[2] = bottomRight;
+        mCornerRadius[3] = bottomLeft;
+        onShapeChanged();
+    }
+
+    /**
+     * @param renderMode 绘制圆形和圆角的方式, {@link #RENDER_MODE_AUTO}, {@link #RENDER_MODE_LAYER},
+     *                   {@link #RENDER_MODE_OUTLINE}或者{@link #RENDER_MODE_SHADER}
+     */
+    public void setRenderMode(int renderMode) {
+        mRenderMode = renderMode;
+        onShapeChanged();
     }
 
     /**
@@ -71,6 +197,7 @@ public class RatioImageView extends AppCompatImageView {
 
     public void setNumber(int number) {
         mNumber = number;
+        mNumberText = "+" + number;
     }
 
     public void setNumberSize(float numberSize) {
@@ -83,6 +210,185 @@ public class RatioImageView extends AppCompatImageView {
 
     public void setPreview(boolean preview) {
         isPreview = preview;
+        onShapeChanged();
+    }
+
+    /**
+     * 分块显示大图, 在子线程解码一张缩小到View大小的预览图, 放大时只解码可见区域的分块, 适合和{@link #setPreview(boolean)}
+     * 以及{@link ImageZoomHelper}一起查看相机拍摄的大图. 分块缓存在{@link ImageCache#getDefault()}中.
+     * 打开完成前分离时, 再次添加后重新打开, 直接设置其他图片时取消打开
+     *
+     * @param source 图片的来源
+     */
+    public void setTiledImage(ImageSource source) {
+        cancelImageLoad();
+        mImageSource = null;
+        cancelTiledLoad();
+        mTiledSource = source;
+        startTiledLoad();
+    }
+
+    /**
+     * 添加到窗口后在子线程打开分块图片, 打开前一直显示之前的图片
+     */
+    private void startTiledLoad() {
+        if (mTiledSource == null || mTiledLoad != null || !isAttachedToWindow()) return;
+        final ImageSource source = mTiledSource;
+        final int generation = mTiledLoadGeneration;
+        int previewSize = Math.max(getWidth(), getHeight());
+        if (previewSize == 0) {
+            previewSize = Math.max(getResources().getDisplayMetrics().widthPixels,
+                    getResources().getDisplayMetrics().heightPixels);
+        }
+        final int size = previewSize;
+        mTiledLoad = DecodeExecutor.get().submit(new Runnable() {
+            @Override
+            public void run() {
+                TiledImageDrawable drawable;
+                try {
+                    drawable = TiledImageDrawable.create(source, size, ImageCache.getDefault());
+                } catch (IOException e) {
+                    Log.w(TAG, "unable to open tiled image: " + source, e);
+                    drawable = null;
+                }
+                final TiledImageDrawable result = drawable;
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mTiledLoadGeneration) {
+                            if (result != null) result.recycle();
+                            return;
+                        }
+                        mTiledLoad = null;
+                        mTiledSource = null;
+                        if (result == null) return;
+                        isSettingTiledImage = true;
+                        setImageDrawable(result);
+                        isSettingTiledImage = false;
+                    }
+                });
+            }
+        });
+    }
+
+    private void cancelTiledLoad() {
+        mTiledLoadGeneration++;
+        if (mTiledLoad != null) {
+            mTiledLoad.cancel(true);
+            mTiledLoad = null;
+        }
+    }
+
+    /**
+     * 异步加载图片, 按照测量的宽度和宽高比例计算采样率, 只解码View需要的大小, 解码时复用{@link BitmapPool}中的内存.
+     * 图片由这个ImageView独占, 重新设置图片或者分离时放回复用池, 分离后再次添加时重新加载
+     *
+     * @param source 图片的来源, 为null时清除图片
+     */
+    public void loadImage(@Nullable ImageSource source) {
+        // 同一张图片已经加载或者正在加载
+        if (source != null && source.equals(mImageSource) && (mImageLoad != null || mLoadedBitmap != null)) return;
+        cancelTiledLoad();
+        setImageDrawable(null);
+        mImageSource = source;
+        startImageLoad();
+    }
+
+    /**
+     * @param uri 图片的Uri, 支持content, file和android.resource
+     * @see #loadImage(ImageSource)
+     */
+    public void loadImage(Uri uri) {
+        loadImage(ImageSource.uri(getContext(), uri));
+    }
+
+    /**
+     * @param file 图片文件
+     * @see #loadImage(ImageSource)
+     */
+    public void loadImage(File file) {
+        loadImage(ImageSource.file(file));
+    }
+
+    /**
+     * @param resId 图片资源的id, 必须是位图资源
+     * @see #loadImage(ImageSource)
+     */
+    public void loadImageResource(int resId) {
+        loadImage(ImageSource.resource(getContext(), resId));
+    }
+
+    /**
+     * 测量后开始加载, 目标宽度为测量的宽度, 设置了宽高比例时目标高度由宽度计算, 与{@link #onMeasure(int, int)}一致
+     */
+    private void startImageLoad() {
+        if (mImageSource == null || mImageLoad != null || mLoadedBitmap != null || !isAttachedToWindow()) return;
+        int measuredWidth = getMeasuredWidth();
+        if (measuredWidth <= 0) return;
+        int width = measuredWidth - getPaddingLeft() - getPaddingRight();
+        int height = (mRatio != 0 && !isPreview ? (int) (measuredWidth / mRatio) : getMeasuredHeight())
+                - getPaddingTop() - getPaddingBottom();
+        mImageLoad = ImageLoader.load(mImageSource, width, height, null, BitmapPool.getDefault(),
+                new ImageLoader.Callback() {
+                    @Override
+                    public void onLoaded(@Nullable Bitmap bitmap) {
+                        mImageLoad = null;
+                        if (bitmap == null) return;
+                        mLoadedBitmap = bitmap;
+                        isSettingLoadedImage = true;
+                        setImageBitmap(bitmap);
+                        isSettingLoadedImage = false;
+                    }
+                });
+    }
+
+    private void cancelImageLoad() {
+        if (mImageLoad != null) {
+            mImageLoad.cancel();
+            mImageLoad = null;
+        }
+    }
+
+    /**
+     * 分块图片不再显示后释放解码器
+     *
+     * @param current 当前显示的图片
+     */
+    private void releaseTiledDrawable(@Nullable Drawable current) {
+        if (mTiledDrawable == null || mTiledDrawable == current) return;
+        mTiledDrawable.recycle();
+        mTiledDrawable = null;
+    }
+
+    /**
+     * 异步加载的图片不再显示后, 等到下一帧绘制之后放回复用池
+     *
+     * @param current 当前显示的图片
+     */
+    private void releaseLoadedBitmap(@Nullable Drawable current) {
+        if (mLoadedBitmap == null) return;
+        if (current instanceof BitmapDrawable && ((BitmapDrawable) current).getBitmap() == mLoadedBitmap) return;
+        // 复用后Bitmap的内容和大小都会改变, 不能继续使用原来的BitmapShader
+        if (mShaderBitmap == mLoadedBitmap) {
+            mShaderBitmap = null;
+            mBitmapShader = null;
+            mShaderPaint.setShader(null);
+        }
+        final Bitmap bitmap = mLoadedBitmap;
+        mLoadedBitmap = null;
+        // RenderThread可能还在绘制包含这张图片的上一帧, 下一帧绘制的内容同步到RenderThread之后再放回复用池.
+        // onDetachedFromWindow中View还没有完全分离, View.post的任务会等到再次添加才执行, 因此不通过View延迟
+        Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        BitmapPool.getDefault().put(bitmap);
+                    }
+                });
+            }
+        });
     }
 
     /**
@@ -91,6 +397,8 @@ public class RatioImageView extends AppCompatImageView {
      * @param imageZoomHelper 创建一个新{@link ImageZoomHelper}即可绑定
      */
     public void setImageZoomHelper(ImageZoomHelper imageZoomHelper) {
+        // 之前的动画还会继续修改图片的Matrix
+        if (mImageZoomHelper != null && mImageZoomHelper != imageZoomHelper) mImageZoomHelper.stopAnimation();
         mImageZoomHelper = imageZoomHelper;
     }
 
@@ -111,28 +419,68 @@ public class RatioImageView extends AppCompatImageView {
                 R.styleable.RatioImageView_foregroundColor, 0xFFBDBDBD);
         isCircle = t.getBoolean(R.styleable.RatioImageView_isCircle, false);
         isMask = t.getBoolean(R.styleable.RatioImageView_isMask, true);
-        int radius = dp2px(8);
-        mCornerRadius[0] = mCornerRadius[1] = mCornerRadius[2] = mCornerRadius[3] = (int) t.getDimension(
-                R.styleable.RatioImageView_cornerRadius, radius);
+        // 单独设置的圆角优先, 没有设置时使用统一的圆角
+        float radius = t.getDimension(R.styleable.RatioImageView_cornerRadius, dp2px(8));
         mCornerRadius[0] = (int) t.getDimension(R.styleable.RatioImageView_top_left_cornerRadius, radius);
         mCornerRadius[1] = (int) t.getDimension(R.styleable.RatioImageView_top_right_cornerRadius, radius);
-        mCornerRadius[2] = (int) t.getDimension(R.styleable.RatioImageView_bottom_left_cornerRadius, radius);
-        mCornerRadius[3] = (int) t.getDimension(R.styleable.RatioImageView_top_left_cornerRadius, radius);
+        mCornerRadius[2] = (int) t.getDimension(R.styleable.RatioImageView_bottom_right_cornerRadius, radius);
+        mCornerRadius[3] = (int) t.getDimension(R.styleable.RatioImageView_bottom_left_cornerRadius, radius);
         mNumberColor = t.getColor(R.styleable.RatioImageView_numberColor, 0xFFFFFFFF);
         mNumberMaskColor = t.getColor(R.styleable.RatioImageView_numberMaskColor, 0x66000000);
         mNumberSize = (int) t.getDimension(R.styleable.RatioImageView_numberSize, dp2px(30));
 
         t.recycle();
 
-        mPaint = new Paint();
-        mPath = new Path();
-        mTargetPath = new Path();
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mPaint.setTextAlign(Paint.Align.CENTER);
+        mClipPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mClipPaint.setXfermode(DST_OUT);
+        mShaderPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        mShapePath = new Path();
+        mOutsidePath = new Path();
+        onShapeChanged();
     }
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
-        mOriginRectF = new RectF(0, 0, getWidth(), getHeight());
+        mOriginRectF.set(0, 0, w, h);
+        isPathDirty = true;
+        invalidateOutline();
+    }
+
+    /**
+     * 圆形, 圆角或者绘制方式改变时重新创建Path和Outline
+     */
+    private void onShapeChanged() {
+        isPathDirty = true;
+        boolean clipToOutline = !isPreview && isOutlineRendering();
+        ViewOutlineProvider provider = getOutlineProvider();
+        if (clipToOutline) {
+            if (provider != SHAPE_OUTLINE_PROVIDER) {
+                mReplacedOutlineProvider = provider;
+                setOutlineProvider(SHAPE_OUTLINE_PROVIDER);
+            }
+            setClipToOutline(true);
+        } else if (provider == SHAPE_OUTLINE_PROVIDER) {
+            // 只恢复自己替换的OutlineProvider, 调用方设置的OutlineProvider不修改
+            setOutlineProvider(mReplacedOutlineProvider);
+            mReplacedOutlineProvider = null;
+            setClipToOutline(false);
+        }
+        // 已经安装的OutlineProvider不会因为圆角改变重新获取Outline
+        invalidateOutline();
+        invalidate();
+    }
+
+    /**
+     * @return 是否通过Outline裁剪, Outline只能裁剪圆形和四个圆角相同的圆角矩形
+     */
+    private boolean isOutlineRendering() {
+        if (mRenderMode == RENDER_MODE_LAYER || mRenderMode == RENDER_MODE_SHADER) return false;
+        return isCircle || (mCornerRadius[0] == mCornerRadius[1]
+                && mCornerRadius[0] == mCornerRadius[2]
+                && mCornerRadius[0] == mCornerRadius[3]);
     }
 
     @Override
@@ -145,44 +493,233 @@ public class RatioImageView extends AppCompatImageView {
             }
         }
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        // 测量后才知道解码的目标大小
+        startImageLoad();
     }
 
     @Override
-    public void draw(Canvas canvas) {
-        // 保存图片
-        int w = getWidth(), h = getHeight();
-        canvas.saveLayer(mOriginRectF, null, Canvas.ALL_SAVE_FLAG);
-        super.draw(canvas);
+    public void setImageDrawable(@Nullable Drawable drawable) {
+        // 直接设置图片时取消异步加载和分块图片的打开
+        if (!isSettingLoadedImage && !isSettingTiledImage) {
+            cancelImageLoad();
+            mImageSource = null;
+            cancelTiledLoad();
+            mTiledSource = null;
+        }
+        super.setImageDrawable(drawable);
+        isImageMatrixDirty = true;
+        // setImageBitmap在调用setImageDrawable之前已经清除了图片, 替换的分块图片只能从字段中获取
+        releaseTiledDrawable(drawable);
+        if (isSettingTiledImage) mTiledDrawable = (TiledImageDrawable) drawable;
+        releaseLoadedBitmap(drawable);
+    }
 
-        if (!isPreview) {
-            mPaint.reset();
-            mPaint.setAntiAlias(true);
-            mPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OUT));
+    @Override
+    public void setImageURI(@Nullable Uri uri) {
+        // setImageURI不经过setImageDrawable
+        cancelImageLoad();
+        mImageSource = null;
+        cancelTiledLoad();
+        mTiledSource = null;
+        super.setImageURI(uri);
+        isImageMatrixDirty = true;
+        releaseTiledDrawable(getDrawable());
+        releaseLoadedBitmap(getDrawable());
+    }
 
-            // 绘制目标图片的Path
-            canvas.drawPath(getTargetPath(w, h, Path.Direction.CW, Path.Op.DIFFERENCE), mPaint);
+    @Override
+    public void setImageResource(int resId) {
+        // setImageResource不经过setImageDrawable
+        cancelImageLoad();
+        mImageSource = null;
+        cancelTiledLoad();
+        mTiledSource = null;
+        super.setImageResource(resId);
+        isImageMatrixDirty = true;
+        releaseTiledDrawable(getDrawable());
+        releaseLoadedBitmap(getDrawable());
+    }
+
+    @Override
+    public void setImageLevel(int level) {
+        super.setImageLevel(level);
+        isImageMatrixDirty = true;
+    }
+
+    @Override
+    public void setImageMatrix(Matrix matrix) {
+        super.setImageMatrix(matrix);
+        isImageMatrixDirty = true;
+    }
+
+    @Override
+    public void setScaleType(ScaleType scaleType) {
+        super.setScaleType(scaleType);
+        isImageMatrixDirty = true;
+    }
+
+    @Override
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
+        isImageMatrixDirty = true;
+    }
+
+    @Override
+    public void invalidateDrawable(@NonNull Drawable dr) {
+        // 图片的大小改变时ImageView会重新计算Matrix
+        if (dr == getDrawable()) isImageMatrixDirty = true;
+        super.invalidateDrawable(dr);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        // 每次布局ImageView都会按照大小和padding重新计算Matrix
+        isImageMatrixDirty = true;
+        super.onLayout(changed, left, top, right, bottom);
+    }
+
+    /**
+     * ImageView没有Matrix时getImageMatrix()每次都会创建新的Matrix, 绘制时使用缓存的Matrix,
+     * 有Matrix时返回的就是ImageView正在使用的Matrix
+     *
+     * @return 绘制图片使用的Matrix
+     */
+    private Matrix getDrawMatrix() {
+        if (isImageMatrixDirty || mImageMatrix == null) {
+            mImageMatrix = getImageMatrix();
+            isImageMatrixDirty = false;
+        }
+        return mImageMatrix;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        // 分离时释放的图片和取消打开的分块图片重新加载
+        startImageLoad();
+        startTiledLoad();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        cancelTiledLoad();
+        cancelImageLoad();
+        if (mLoadedBitmap != null) {
+            isSettingLoadedImage = true;
+            setImageDrawable(null);
+            isSettingLoadedImage = false;
+        }
+        Drawable drawable = getDrawable();
+        if (drawable instanceof TiledImageDrawable) {
+            ((TiledImageDrawable) drawable).cancelPendingTiles();
+        }
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (isPreview) {
+            isShaderDrawing = false;
+            super.draw(canvas);
+            return;
+        }
+        if (isPathDirty) updatePath();
+
+        // 硬件加速时由Outline裁剪, 软件绘制不支持Outline裁剪, 使用离屏缓冲
+        boolean clipByOutline = getClipToOutline() && canvas.isHardwareAccelerated();
+        // Outline不能裁剪时, 图片是Bitmap就通过BitmapShader在onDraw中直接绘制形状
+        isShaderDrawing = !clipByOutline
+                && (mRenderMode == RENDER_MODE_AUTO || mRenderMode == RENDER_MODE_SHADER)
+                && prepareShader();
+        if (clipByOutline || isShaderDrawing) {
+            super.draw(canvas);
+        } else {
+            // 保存图片
+            int saveCount = canvas.saveLayer(mOriginRectF, null);
+            super.draw(canvas);
+            // 擦除目标图片以外的部分
+            canvas.drawPath(mOutsidePath, mClipPaint);
             // 重绘图片
-            canvas.restore();
-
-            // 添加灰色遮罩数字显示
-            if (mNumber > 0) {
-                mPaint.reset();
-                mPaint.setAntiAlias(true);
-
-                // 绘制灰色遮罩
-                mPaint.setColor(mNumberMaskColor);
-                canvas.drawPath(getTargetPath(w, h, Path.Direction.CCW, Path.Op.INTERSECT), mPaint);
-
-                // 绘制文字
-                float baseY = (getHeight() >> 1) - (mPaint.ascent() + mPaint.descent()) / 2;
-                String text = "+" + mNumber;
-                mPaint.setTextSize(mNumberSize);
-                mPaint.setTextAlign(Paint.Align.CENTER);
-                mPaint.setColor(mNumberColor);
-                canvas.drawText(text, (getWidth() >> 1), baseY, mPaint);
+            canvas.restoreToCount(saveCount);
+        }
+
+        // 添加灰色遮罩数字显示
+        if (mNumber > 0) {
+            // 绘制灰色遮罩, Outline会裁剪整个View, 其他方式需要按形状绘制
+            mPaint.setColor(mNumberMaskColor);
+            if (clipByOutline) {
+                canvas.drawRect(mOriginRectF, mPaint);
+            } else {
+                canvas.drawPath(mShapePath, mPaint);
+            }
+
+            // 绘制文字
+            mPaint.setTextSize(mNumberSize);
+            mPaint.setColor(mNumberColor);
+            float baseY = (getHeight() >> 1) - (mPaint.ascent() + mPaint.descent()) / 2;
+            canvas.drawText(mNumberText, (getWidth() >> 1), baseY, mPaint);
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (!isShaderDrawing) {
+            Drawable drawable = getDrawable();
+            if (drawable instanceof TiledImageDrawable) {
+                // 分块图片按照当前的缩放系数选择解码的采样率
+                getDrawMatrix().getValues(mMatrixValues);
+                ((TiledImageDrawable) drawable).setDisplayScale(mMatrixValues[Matrix.MSCALE_X]);
             }
-            mPaint.setXfermode(null);
+            super.onDraw(canvas);
+            return;
         }
+        // 只绘制图片覆盖的区域, 避免CLAMP拉伸图片的边缘
+        int saveCount = canvas.save();
+        canvas.clipRect(mImageRectF);
+        if (isCircle) {
+            canvas.drawCircle(mOriginRectF.centerX(), mOriginRectF.centerY(),
+                    Math.min(mOriginRectF.width(), mOriginRectF.height()) / 2, mShaderPaint);
+        } else {
+            canvas.drawPath(mShapePath, mShaderPaint);
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * 准备当前帧的BitmapShader, 图片不是BitmapDrawable, 设置了tint或者Matrix不是缩放和平移时不能使用
+     *
+     * @return 是否可以使用BitmapShader绘制
+     */
+    private boolean prepareShader() {
+        Drawable drawable = getDrawable();
+        if (!(drawable instanceof BitmapDrawable) || getImageTintList() != null) return false;
+        BitmapDrawable bitmapDrawable = (BitmapDrawable) drawable;
+        Bitmap bitmap = bitmapDrawable.getBitmap();
+        Matrix imageMatrix = getDrawMatrix();
+        if (bitmap == null || bitmap.isRecycled() || !imageMatrix.rectStaysRect()) return false;
+        Rect bounds = drawable.getBounds();
+        if (bounds.isEmpty()) return false;
+
+        if (bitmap != mShaderBitmap) {
+            mShaderBitmap = bitmap;
+            mBitmapShader = new BitmapShader(bitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+            mShaderPaint.setShader(mBitmapShader);
+        }
+        // 和ImageView绘制图片一致: 图片像素缩放到Drawable的大小, 再经过图片的Matrix, 最后偏移padding
+        mShaderMatrix.setScale(bounds.width() / (float) bitmap.getWidth(), bounds.height() / (float) bitmap.getHeight());
+        mShaderMatrix.postTranslate(bounds.left, bounds.top);
+        mShaderMatrix.postConcat(imageMatrix);
+        mShaderMatrix.postTranslate(getPaddingLeft(), getPaddingTop());
+        mBitmapShader.setLocalMatrix(mShaderMatrix);
+
+        mImageRectF.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        mShaderMatrix.mapRect(mImageRectF);
+
+        // 点击遮罩和透明度设置在BitmapDrawable的画笔上
+        Paint drawablePaint = bitmapDrawable.getPaint();
+        mShaderPaint.setColorFilter(drawablePaint.getColorFilter());
+        mShaderPaint.setAlpha(drawablePaint.getAlpha());
+        return true;
     }
 
     @SuppressLint("ClickableViewAccessibility")
@@ -226,33 +763,38 @@ public class RatioImageView extends AppCompatImageView {
         }
     }
 
+    @Override
+    public boolean canScrollHorizontally(int direction) {
+        // 放大的图片还能拖动时不让ViewPager等父布局拦截
+        if (isPreview && mImageZoomHelper != null && mImageZoomHelper.canScrollHorizontally(direction)) {
+            return true;
+        }
+        return super.canScrollHorizontally(direction);
+    }
+
     /**
-     * 获取目标图像的Path
-     *
-     * @param w 宽度
-     * @param h 长度
-     * @return 目标图像的Path
+     * 创建目标图像的Path和目标图像以外的Path, 只在大小或者圆角改变后创建一次
      */
-    private Path getTargetPath(int w, int h, Path.Direction direction, Path.Op op) {
-        mPath.reset();
-        mTargetPath.reset();
-        // 原图片大小的Path
-        mPath.addRect(mOriginRectF, Path.Direction.CW);
+    private void updatePath() {
+        isPathDirty = false;
+        int w = getWidth(), h = getHeight();
+        mShapePath.reset();
+        mOutsidePath.reset();
         // 目标图片的Path
         if (isCircle) {
             float radius = (Math.min(w, h) / 2.0f);
-            mTargetPath.addCircle(w / 2.0f, h / 2.0f, radius, direction);
+            mShapePath.addCircle(w / 2.0f, h / 2.0f, radius, Path.Direction.CW);
         } else {
             // 获取圆角矩形的圆角大小
             float[] radii = new float[8];
             for (int i = 0; i < mCornerRadius.length; i++) {
                 radii[2 * i] = radii[2 * i + 1] = mCornerRadius[i];
             }
-            mTargetPath.addRoundRect(mOriginRectF, radii, direction);
+            mShapePath.addRoundRect(mOriginRectF, radii, Path.Direction.CW);
         }
         // 将目标图片的Path和原始图片的Path取目标图片没有的部分, 裁剪原始图片
-        mPath.op(mTargetPath, op);
-        return mPath;
+        mOutsidePath.addRect(mOriginRectF, Path.Direction.CW);
+        mOutsidePath.op(mShapePath, Path.Op.DIFFERENCE);
     }
 
     /**
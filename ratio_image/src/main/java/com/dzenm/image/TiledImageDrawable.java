@@ -0,0 +1,343 @@
+package com.dzenm.image;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.Future;
+
+/**
+ * 分块解码的大图, 固有大小为原图的大小. 始终绘制一张缩小到View大小的预览图, 放大后按照当前的缩放系数选择采样率,
+ * 只解码可见区域的分块, 分块在子线程通过BitmapRegionDecoder解码后放入{@link ImageCache}. 不再可见的分块取消解码
+ *
+ * @author dzenm
+ */
+final class TiledImageDrawable extends Drawable {
+
+    /**
+     * 解码后每个分块的大小(px)
+     */
+    private static final int TILE_SIZE = 512;
+
+    private final ImageSource mSource;
+    private final BitmapRegionDecoder mDecoder;
+    private final ImageCache mCache;
+    private final Bitmap.Config mConfig;
+
+    /**
+     * 原图的大小
+     */
+    private final int mWidth, mHeight;
+
+    /**
+     * 缩小的预览图和它的采样率
+     */
+    private final Bitmap mPreview;
+    private final int mPreviewSampleSize;
+
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 绘制时复用的区域, 都是原图的坐标
+     */
+    private final Rect mVisibleRect = new Rect();
+    private final Rect mTileRect = new Rect();
+
+    /**
+     * 每个采样率下分块在缓存中的key, 按行列保存, 绘制时不需要创建字符串
+     */
+    private final SparseArray<String[]> mTileKeys = new SparseArray<>();
+
+    /**
+     * 正在解码的分块
+     */
+    private final HashMap<String, PendingTile> mPendingTiles = new HashMap<>();
+
+    /**
+     * 原图的1个像素在屏幕上的大小
+     */
+    private float mDisplayScale = 1;
+
+    /**
+     * 当前帧, 用于判断正在解码的分块是否仍然可见
+     */
+    private long mFrame;
+
+    private boolean isRecycled;
+
+    private TiledImageDrawable(ImageSource source, BitmapRegionDecoder decoder, ImageCache cache,
+                               Bitmap.Config config, Bitmap preview, int previewSampleSize) {
+        mSource = source;
+        mDecoder = decoder;
+        mCache = cache;
+        mConfig = config;
+        mWidth = decoder.getWidth();
+        mHeight = decoder.getHeight();
+        mPreview = preview;
+        mPreviewSampleSize = previewSampleSize;
+    }
+
+    /**
+     * 打开图片并解码预览图, 需要在子线程调用
+     *
+     * @param source      图片的来源
+     * @param previewSize 预览图最长边的最大值, 通常为View的大小
+     * @param cache       分块的缓存
+     * @return 分块解码的图片
+     */
+    static TiledImageDrawable create(ImageSource source, int previewSize, ImageCache cache) throws IOException {
+        BitmapRegionDecoder decoder;
+        InputStream input = source.open();
+        try {
+            decoder = BitmapRegionDecoder.newInstance(input, false);
+        } finally {
+            input.close();
+        }
+        // 之后打开或者解码失败时释放解码器
+        boolean isCreated = false;
+        try {
+            // 没有透明通道的JPEG使用RGB_565, 内存减半
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            input = source.open();
+            try {
+                BitmapFactory.decodeStream(input, null, bounds);
+            } finally {
+                input.close();
+            }
+            Bitmap.Config config = "image/jpeg".equals(bounds.outMimeType)
+                    ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+            int width = decoder.getWidth(), height = decoder.getHeight();
+            int sampleSize = 1;
+            while (Math.max(width, height) / (sampleSize * 2) >= previewSize) {
+                sampleSize *= 2;
+            }
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSize;
+            options.inPreferredConfig = config;
+            Bitmap preview = decoder.decodeRegion(new Rect(0, 0, width, height), options);
+            if (preview == null) throw new IOException("Unable to decode " + source);
+            TiledImageDrawable drawable = new TiledImageDrawable(source, decoder, cache, config, preview, sampleSize);
+            isCreated = true;
+            return drawable;
+        } finally {
+            if (!isCreated) decoder.recycle();
+        }
+    }
+
+    /**
+     * @param displayScale 原图的1个像素在屏幕上的大小, 即ImageView的Matrix的缩放系数
+     */
+    void setDisplayScale(float displayScale) {
+        mDisplayScale = displayScale;
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        if (isRecycled) return;
+        Rect bounds = getBounds();
+        if (bounds.isEmpty()) return;
+        mFrame++;
+
+        // 按照原图的坐标绘制
+        int saveCount = canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        float scaleX = bounds.width() / (float) mWidth, scaleY = bounds.height() / (float) mHeight;
+        canvas.scale(scaleX, scaleY);
+        mTileRect.set(0, 0, mWidth, mHeight);
+        canvas.drawBitmap(mPreview, null, mTileRect, mPaint);
+
+        float displayScale = mDisplayScale * Math.max(scaleX, scaleY);
+        if (displayScale > 0
+                && getSampleSize(displayScale) < mPreviewSampleSize
+                && canvas.getClipBounds(mVisibleRect)
+                && mVisibleRect.intersect(0, 0, mWidth, mHeight)) {
+            drawTiles(canvas, getSampleSize(displayScale));
+        }
+        canvas.restoreToCount(saveCount);
+        cancelInvisibleTiles();
+    }
+
+    /**
+     * 绘制可见的分块, 没有解码的分块请求解码, 解码前显示预览图
+     */
+    private void drawTiles(Canvas canvas, int sampleSize) {
+        int tileSize = TILE_SIZE * sampleSize;
+        int columns = (mWidth + tileSize - 1) / tileSize;
+        int firstRow = mVisibleRect.top / tileSize, lastRow = (mVisibleRect.bottom - 1) / tileSize;
+        int firstColumn = mVisibleRect.left / tileSize, lastColumn = (mVisibleRect.right - 1) / tileSize;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                mTileRect.set(column * tileSize, row * tileSize,
+                        Math.min(mWidth, (column + 1) * tileSize), Math.min(mHeight, (row + 1) * tileSize));
+                String key = getTileKey(sampleSize, row * columns + column, row, column);
+                Bitmap tile = mCache.get(key);
+                if (tile != null) {
+                    canvas.drawBitmap(tile, null, mTileRect, mPaint);
+                } else {
+                    requestTile(key, sampleSize);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param scale 原图的1个像素在屏幕上的大小
+     * @return 不会降低清晰度的最大采样率, 为2的幂
+     */
+    private static int getSampleSize(float scale) {
+        int sampleSize = 1;
+        while (sampleSize * 2 * scale <= 1) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private String getTileKey(int sampleSize, int index, int row, int column) {
+        String[] keys = mTileKeys.get(sampleSize);
+        if (keys == null) {
+            int tileSize = TILE_SIZE * sampleSize;
+            keys = new String[((mWidth + tileSize - 1) / tileSize) * ((mHeight + tileSize - 1) / tileSize)];
+            mTileKeys.put(sampleSize, keys);
+        }
+        if (keys[index] == null) {
+            keys[index] = mSource.getKey() + "#tile/" + sampleSize + "/" + row + "/" + column;
+        }
+        return keys[index];
+    }
+
+    /**
+     * 在子线程解码分块, 已经在解码时只更新可见的帧
+     */
+    private void requestTile(final String key, final int sampleSize) {
+        PendingTile pending = mPendingTiles.get(key);
+        if (pending != null) {
+            pending.frame = mFrame;
+            return;
+        }
+        final Rect region = new Rect(mTileRect);
+        final PendingTile newPending = new PendingTile();
+        newPending.frame = mFrame;
+        newPending.future = DecodeExecutor.get().submit(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap tile = decodeTile(region, sampleSize);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onTileDecoded(key, newPending, tile);
+                    }
+                });
+            }
+        });
+        mPendingTiles.put(key, newPending);
+    }
+
+    private Bitmap decodeTile(Rect region, int sampleSize) {
+        if (Thread.currentThread().isInterrupted()) return null;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = mConfig;
+        try {
+            return mDecoder.decodeRegion(region, options);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            // 解码时图片已经释放
+            return null;
+        }
+    }
+
+    private void onTileDecoded(String key, PendingTile pending, @Nullable Bitmap tile) {
+        // 取消后重新请求的分块由新的任务处理
+        if (mPendingTiles.get(key) == pending) mPendingTiles.remove(key);
+        if (isRecycled || tile == null) return;
+        mCache.put(key, tile);
+        invalidateSelf();
+    }
+
+    /**
+     * 取消这一帧没有用到的分块的解码
+     */
+    private void cancelInvisibleTiles() {
+        Iterator<PendingTile> iterator = mPendingTiles.values().iterator();
+        while (iterator.hasNext()) {
+            PendingTile pending = iterator.next();
+            if (pending.frame != mFrame) {
+                pending.future.cancel(true);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 取消所有正在解码的分块, 例如View分离时, 下一次绘制时重新请求
+     */
+    void cancelPendingTiles() {
+        for (PendingTile pending : mPendingTiles.values()) {
+            pending.future.cancel(true);
+        }
+        mPendingTiles.clear();
+    }
+
+    /**
+     * 不再使用时释放解码器, 缓存中的分块保留, 下一次打开同一张图片时可以直接使用
+     */
+    void recycle() {
+        if (isRecycled) return;
+        isRecycled = true;
+        cancelPendingTiles();
+        mDecoder.recycle();
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        mPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return mConfig == Bitmap.Config.RGB_565 ? PixelFormat.OPAQUE : PixelFormat.TRANSLUCENT;
+    }
+
+    /**
+     * 正在解码的分块和最后一次可见的帧
+     */
+    private static final class PendingTile {
+        Future<?> future;
+        long frame;
+    }
+}
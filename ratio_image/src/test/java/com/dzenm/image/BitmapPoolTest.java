@@ -0,0 +1,59 @@
+package com.dzenm.image;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 复用池只返回足够大并且格式相同的Bitmap, 占用的内存不超过最大值
+ *
+ * @author dzenm
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BitmapPoolTest {
+
+    @Test
+    public void getReturnsSmallestFittingBitmap() {
+        BitmapPool pool = new BitmapPool(1024 * 1024);
+        Bitmap large = Bitmap.createBitmap(200, 200, Bitmap.Config.ARGB_8888);
+        Bitmap small = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        pool.put(large);
+        pool.put(small);
+
+        assertSame(small, pool.get(90, 90, Bitmap.Config.ARGB_8888));
+        assertNull(pool.get(90, 90, Bitmap.Config.RGB_565));
+        // 比需要的大4倍以上的Bitmap不复用
+        assertNull(pool.get(10, 10, Bitmap.Config.ARGB_8888));
+        assertSame(large, pool.get(150, 150, Bitmap.Config.ARGB_8888));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void putEvictsOldestBitmaps() {
+        int bitmapSize = 100 * 100 * 4;
+        BitmapPool pool = new BitmapPool(bitmapSize * 2);
+        pool.put(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888));
+        pool.put(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888));
+        pool.put(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888));
+        assertTrue(pool.size() <= bitmapSize * 2);
+
+        pool.get(100, 100, Bitmap.Config.ARGB_8888);
+        pool.get(100, 100, Bitmap.Config.ARGB_8888);
+        assertNull(pool.get(100, 100, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void immutableBitmapsAreIgnored() {
+        BitmapPool pool = new BitmapPool(1024 * 1024);
+        Bitmap bitmap = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        pool.put(bitmap.copy(Bitmap.Config.ARGB_8888, false));
+        assertNull(pool.get(100, 100, Bitmap.Config.ARGB_8888));
+    }
+}
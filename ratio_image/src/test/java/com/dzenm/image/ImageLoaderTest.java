@@ -0,0 +1,53 @@
+package com.dzenm.image;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按照目标大小计算采样率, 解码后的图片不能小于目标大小, 也不能比需要的大一倍以上
+ *
+ * @author dzenm
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ImageLoaderTest {
+
+    @Test
+    public void sampleSizeKeepsTargetSize() {
+        int[][] sizes = {{4000, 3000}, {1080, 1920}, {500, 500}, {12000, 800}};
+        int[][] targets = {{1080, 1920}, {540, 540}, {100, 100}, {300, 300}};
+        for (int[] size : sizes) {
+            for (int[] target : targets) {
+                int sampleSize = ImageLoader.computeSampleSize(size[0], size[1], target[0], target[1]);
+                assertEquals(0, sampleSize & (sampleSize - 1));
+                int width = size[0] / sampleSize, height = size[1] / sampleSize;
+                assertTrue(width >= Math.min(size[0], target[0]));
+                assertTrue(height >= Math.min(size[1], target[1]));
+                // 再大一倍的采样率会小于目标大小
+                assertTrue(size[0] / (sampleSize * 2) < target[0] || size[1] / (sampleSize * 2) < target[1]);
+            }
+        }
+    }
+
+    @Test
+    public void sampleSizeWithoutTarget() {
+        assertEquals(1, ImageLoader.computeSampleSize(4000, 3000, 0, 0));
+        assertEquals(4, ImageLoader.computeSampleSize(4000, 3000, 1000, 0));
+        assertEquals(8, ImageLoader.computeSampleSize(4000, 3000, 0, 300));
+    }
+
+    @Test
+    public void keyDependsOnTargetSize() {
+        ImageSource source = ImageSource.file(new File("/sdcard/DCIM/a.jpg"));
+        String small = ImageLoader.getKey(source, 100, 100);
+        String large = ImageLoader.getKey(source, 1080, 1920);
+        assertNotEquals(small, large);
+        assertEquals(small, ImageLoader.getKey(source, 100, 100));
+    }
+}
@@ -0,0 +1,265 @@
+package com.dzenm.sidebar;
+
+import android.widget.SectionIndexer;
+
+import java.util.HashMap;
+
+/**
+ * SideBar的分组索引, 列表按分组排序后, 记录每个分组的数量, 分组第一个item的位置由数量累加得到.
+ * 创建时遍历一次列表, 之后列表插入, 删除和改变时只更新受影响的分组, 不需要重新遍历.
+ * 通过{@link SectionLabeler}创建时, 分组为有item的字母, 数量从0变化时增加或者移除分组
+ *
+ * @author dzenm
+ */
+public class SectionIndex implements SectionIndexer {
+
+    /**
+     * 所有可能的分组, item的分组不在其中时归到最后一个
+     */
+    private final String[] mLabels;
+    private final HashMap<String, Integer> mLabelPositions;
+    private final SectionKeyProvider mKeyProvider;
+
+    /**
+     * 是否只显示有item的分组
+     */
+    private final boolean isPopulatedOnly;
+
+    /**
+     * 每个分组的item数量
+     */
+    private final int[] mCounts;
+
+    /**
+     * 每个分组第一个item的位置, 最后一个元素为item的总数
+     */
+    private final int[] mFirstPositions;
+
+    /**
+     * 显示的分组和它在所有分组中的位置, 显示的分组改变时创建新的数组
+     */
+    private String[] mSections;
+    private int[] mSectionLabels;
+
+    /**
+     * 每个分组对应的显示的分组, 没有显示时为前一个显示的分组
+     */
+    private final int[] mLabelSections;
+
+    /**
+     * @param sections    分组, 与SideBar显示的文本一致
+     * @param keyProvider 获取item的分组
+     */
+    public SectionIndex(String[] sections, SectionKeyProvider keyProvider) {
+        this(sections, keyProvider, false);
+    }
+
+    /**
+     * 只显示有item的分组
+     *
+     * @param labeler     计算分组的所有可能值和显示的顺序
+     * @param keyProvider 获取item的分组, 通常是{@link SectionLabeler#getLabel(CharSequence)}
+     */
+    public SectionIndex(SectionLabeler labeler, SectionKeyProvider keyProvider) {
+        this(labeler.getLabels(), keyProvider, true);
+    }
+
+    private SectionIndex(String[] labels, SectionKeyProvider keyProvider, boolean populatedOnly) {
+        mLabels = labels;
+        mKeyProvider = keyProvider;
+        isPopulatedOnly = populatedOnly;
+        mCounts = new int[labels.length];
+        mFirstPositions = new int[labels.length + 1];
+        mLabelSections = new int[labels.length];
+        mLabelPositions = new HashMap<>(labels.length * 4 / 3 + 1);
+        for (int i = 0; i < labels.length; i++) {
+            mLabelPositions.put(labels[i], i);
+        }
+        if (populatedOnly) {
+            mSections = new String[0];
+            mSectionLabels = new int[0];
+        } else {
+            mSections = labels;
+            mSectionLabels = new int[labels.length];
+            for (int i = 0; i < labels.length; i++) {
+                mSectionLabels[i] = i;
+                mLabelSections[i] = i;
+            }
+        }
+    }
+
+    /**
+     * @return 是否只显示有item的分组
+     */
+    public boolean isPopulatedOnly() {
+        return isPopulatedOnly;
+    }
+
+    /**
+     * 遍历所有的item重新创建索引
+     *
+     * @param itemCount item的数量
+     */
+    public void rebuild(int itemCount) {
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] = 0;
+        }
+        for (int position = 0; position < itemCount; position++) {
+            mCounts[getLabelForKey(mKeyProvider.getSectionKey(position))]++;
+        }
+        updateFirstPositions();
+    }
+
+    /**
+     * 使用已经计算好的分组重新创建索引, 分组可以在子线程计算
+     *
+     * @param keys 每个item的分组
+     */
+    public void rebuild(String[] keys) {
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] = 0;
+        }
+        for (String key : keys) {
+            mCounts[getLabelForKey(key)]++;
+        }
+        updateFirstPositions();
+    }
+
+    /**
+     * @param positionStart 插入的第一个item的位置
+     * @param itemCount     插入的数量
+     */
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        for (int position = positionStart; position < positionStart + itemCount; position++) {
+            mCounts[getLabelForKey(mKeyProvider.getSectionKey(position))]++;
+        }
+        updateFirstPositions();
+    }
+
+    /**
+     * @param positionStart 删除的第一个item的位置
+     * @param itemCount     删除的数量
+     */
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        int positionEnd = positionStart + itemCount;
+        // 列表按分组排序, 删除的范围和每个分组的交集就是该分组删除的数量
+        for (int i = 0; i < mCounts.length; i++) {
+            int start = Math.max(positionStart, mFirstPositions[i]);
+            int end = Math.min(positionEnd, mFirstPositions[i + 1]);
+            if (end > start) mCounts[i] -= end - start;
+        }
+        updateFirstPositions();
+    }
+
+    /**
+     * @param positionStart 改变的第一个item的位置
+     * @param itemCount     改变的数量
+     */
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        onItemRangeRemoved(positionStart, itemCount);
+        onItemRangeInserted(positionStart, itemCount);
+    }
+
+    /**
+     * @return item的总数
+     */
+    public int getItemCount() {
+        return mFirstPositions[mCounts.length];
+    }
+
+    /**
+     * @param section 分组的位置
+     * @return 分组中item的数量
+     */
+    public int getCountForSection(int section) {
+        return mCounts[mSectionLabels[section]];
+    }
+
+    @Override
+    public String[] getSections() {
+        return mSections;
+    }
+
+    /**
+     * @param section 分组的位置
+     * @return 分组第一个item的位置, 分组没有item时为下一个分组第一个item的位置
+     */
+    @Override
+    public int getPositionForSection(int section) {
+        if (section < 0) return 0;
+        if (section >= mSectionLabels.length) return getItemCount();
+        return mFirstPositions[mSectionLabels[section]];
+    }
+
+    @Override
+    public int getSectionForPosition(int position) {
+        // 二分查找最后一个第一个item位置不大于position的非空分组
+        int low = 0, high = mCounts.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mFirstPositions[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        while (low > 0 && mCounts[low] == 0) low--;
+        return mLabelSections[low];
+    }
+
+    /**
+     * @param key item的分组
+     * @return 分组在所有分组中的位置, 不存在的分组归到最后一个分组(通常为"#")
+     */
+    private int getLabelForKey(String key) {
+        Integer label = key == null ? null : mLabelPositions.get(key);
+        return label == null ? mCounts.length - 1 : label;
+    }
+
+    private void updateFirstPositions() {
+        mFirstPositions[0] = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            mFirstPositions[i + 1] = mFirstPositions[i] + mCounts[i];
+        }
+        if (isPopulatedOnly) updateSections();
+    }
+
+    /**
+     * 有item的分组改变时重新创建显示的分组, 分组的数量很少, 直接遍历
+     */
+    private void updateSections() {
+        int populated = 0;
+        boolean changed = false;
+        for (int i = 0; i < mCounts.length; i++) {
+            if (mCounts[i] == 0) continue;
+            if (populated >= mSectionLabels.length || mSectionLabels[populated] != i) changed = true;
+            populated++;
+        }
+        if (!changed && populated == mSectionLabels.length) return;
+
+        String[] sections = new String[populated];
+        int[] sectionLabels = new int[populated];
+        for (int i = 0, section = 0; i < mCounts.length; i++) {
+            if (mCounts[i] != 0) {
+                sections[section] = mLabels[i];
+                sectionLabels[section] = i;
+                section++;
+            }
+            mLabelSections[i] = Math.max(section - 1, 0);
+        }
+        mSections = sections;
+        mSectionLabels = sectionLabels;
+    }
+
+    /**
+     * 获取item的分组
+     */
+    public interface SectionKeyProvider {
+
+        /**
+         * @param position item的位置
+         * @return item所在的分组, 与SideBar显示的文本一致, 例如"A"
+         */
+        String getSectionKey(int position);
+    }
+}
@@ -0,0 +1,140 @@
+package com.dzenm.sidebar;
+
+import android.icu.text.AlphabeticIndex;
+import android.os.Build;
+import android.util.LruCache;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * 根据item的文本计算SideBar的分组, API 24以上使用ICU的AlphabeticIndex按语言的排序规则分组,
+ * 中文按拼音首字母分组; 低版本只取第一个字符, 不是英文字母的归到"#". 计算结果按文本缓存, 可以在子线程调用
+ *
+ * @author dzenm
+ */
+public class SectionLabeler {
+
+    /**
+     * 不属于任何字母的分组
+     */
+    public static final String OTHER = "#";
+
+    /**
+     * 缓存的文本数量
+     */
+    private static final int CACHE_SIZE = 2048;
+
+    /**
+     * 所有的分组, 按排序规则排列, 最后一个为"#"
+     */
+    private final String[] mLabels;
+
+    /**
+     * API 24以上的ICU分组, 低版本为null
+     */
+    private final IcuBuckets mIcuBuckets;
+
+    /**
+     * 文本对应的分组
+     */
+    private final LruCache<String, String> mLabelCache = new LruCache<>(CACHE_SIZE);
+
+    public SectionLabeler() {
+        this(Locale.getDefault());
+    }
+
+    /**
+     * @param locale 分组使用的语言, 除了该语言的字母外始终包含英文字母
+     */
+    public SectionLabeler(Locale locale) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            mIcuBuckets = new IcuBuckets(locale);
+            mLabels = mIcuBuckets.getLabels();
+        } else {
+            mIcuBuckets = null;
+            mLabels = new String[27];
+            for (int i = 0; i < 26; i++) {
+                mLabels[i] = String.valueOf((char) ('A' + i));
+            }
+            mLabels[26] = OTHER;
+        }
+    }
+
+    /**
+     * @return 所有可能的分组, 按排序规则排列, 最后一个为"#"
+     */
+    public String[] getLabels() {
+        return mLabels;
+    }
+
+    /**
+     * @param text item的文本
+     * @return 文本所在的分组, 一定是{@link #getLabels()}中的一个
+     */
+    public String getLabel(CharSequence text) {
+        if (text == null || text.length() == 0) return OTHER;
+        String key = text.toString();
+        String label = mLabelCache.get(key);
+        if (label == null) {
+            label = mIcuBuckets == null ? getFirstLetter(key) : mIcuBuckets.getLabel(key);
+            mLabelCache.put(key, label);
+        }
+        return label;
+    }
+
+    /**
+     * 低版本的分组, 只识别英文字母
+     */
+    private static String getFirstLetter(String text) {
+        char c = Character.toUpperCase(text.charAt(0));
+        return c >= 'A' && c <= 'Z' ? String.valueOf(c) : OTHER;
+    }
+
+    /**
+     * 获取item的文本
+     */
+    public interface ItemTextProvider {
+
+        /**
+         * @param position item的位置
+         * @return item用于分组的文本, 例如联系人的名字
+         */
+        CharSequence getItemText(int position);
+    }
+
+    /**
+     * ICU的分组, 单独放在一个类中避免低版本加载android.icu的类. ImmutableIndex是线程安全的
+     */
+    @RequiresApi(Build.VERSION_CODES.N)
+    private static final class IcuBuckets {
+
+        private final AlphabeticIndex.ImmutableIndex<Object> mIndex;
+
+        IcuBuckets(Locale locale) {
+            mIndex = new AlphabeticIndex<>(locale)
+                    .addLabels(Locale.ENGLISH)
+                    .buildImmutableIndex();
+        }
+
+        String[] getLabels() {
+            ArrayList<String> labels = new ArrayList<>(mIndex.getBucketCount());
+            for (int i = 0; i < mIndex.getBucketCount(); i++) {
+                AlphabeticIndex.Bucket<Object> bucket = mIndex.getBucket(i);
+                if (bucket.getLabelType() == AlphabeticIndex.Bucket.LabelType.NORMAL
+                        && !labels.contains(bucket.getLabel())) {
+                    labels.add(bucket.getLabel());
+                }
+            }
+            labels.add(OTHER);
+            return labels.toArray(new String[0]);
+        }
+
+        String getLabel(String text) {
+            AlphabeticIndex.Bucket<Object> bucket = mIndex.getBucket(mIndex.getBucketIndex(text));
+            return bucket.getLabelType() == AlphabeticIndex.Bucket.LabelType.NORMAL ? bucket.getLabel() : OTHER;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.dzenm.sidebar;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+
+/**
+ * SideBar选中文本的预览, 添加到父布局的ViewOverlay中绘制, 显示和移动只需要重绘, 不会触发测量和布局.
+ * 每个文本只绘制一次到ALPHA_8的Bitmap中缓存, 颜色由画笔决定
+ *
+ * @author dzenm
+ */
+final class SectionPreviewDrawable extends Drawable {
+
+    private final Paint mBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mGlyphPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint mRasterPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Canvas mRasterCanvas = new Canvas();
+
+    /**
+     * 每个文本绘制后的Bitmap
+     */
+    private final HashMap<String, Bitmap> mGlyphs = new HashMap<>();
+
+    /**
+     * 当前显示的文本
+     */
+    private Bitmap mGlyph;
+
+    /**
+     * 预览的直径
+     */
+    private int mSize;
+
+    SectionPreviewDrawable() {
+        mBackgroundPaint.setStyle(Paint.Style.FILL);
+        mRasterPaint.setColor(Color.BLACK);
+        mRasterPaint.setFakeBoldText(true);
+    }
+
+    /**
+     * @param size 预览的直径, 文本大小为直径的一半
+     */
+    void setSize(int size) {
+        if (mSize == size) return;
+        mSize = size;
+        mRasterPaint.setTextSize(size / 2.0f);
+        clearGlyphs();
+    }
+
+    int getSize() {
+        return mSize;
+    }
+
+    void setBackgroundColor(int color) {
+        mBackgroundPaint.setColor(color);
+        invalidateSelf();
+    }
+
+    void setTextColor(int color) {
+        mGlyphPaint.setColor(color);
+        invalidateSelf();
+    }
+
+    /**
+     * @param text 显示的文本
+     */
+    void setText(@Nullable String text) {
+        mGlyph = text == null ? null : obtainGlyph(text);
+        invalidateSelf();
+    }
+
+    /**
+     * 移动预览的中心, 原来的位置和新的位置都需要重绘
+     */
+    void moveTo(int centerX, int centerY) {
+        int radius = mSize >> 1;
+        Rect bounds = getBounds();
+        if (bounds.left == centerX - radius && bounds.top == centerY - radius) return;
+        invalidateSelf();
+        setBounds(centerX - radius, centerY - radius, centerX - radius + mSize, centerY - radius + mSize);
+        invalidateSelf();
+    }
+
+    /**
+     * 清空缓存的Bitmap, ViewOverlay可能还在绘制当前的文本, 不直接回收, 由GC释放
+     */
+    void clearGlyphs() {
+        mGlyphs.clear();
+        mGlyph = null;
+        invalidateSelf();
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        Rect bounds = getBounds();
+        float cx = bounds.exactCenterX(), cy = bounds.exactCenterY();
+        canvas.drawCircle(cx, cy, mSize / 2.0f, mBackgroundPaint);
+        if (mGlyph != null) {
+            canvas.drawBitmap(mGlyph, cx - mGlyph.getWidth() / 2.0f, cy - mGlyph.getHeight() / 2.0f, mGlyphPaint);
+        }
+    }
+
+    private Bitmap obtainGlyph(String text) {
+        Bitmap glyph = mGlyphs.get(text);
+        if (glyph == null) {
+            Paint.FontMetricsInt fmi = mRasterPaint.getFontMetricsInt();
+            int width = Math.max(1, (int) Math.ceil(mRasterPaint.measureText(text)));
+            int height = Math.max(1, fmi.bottom - fmi.top);
+            glyph = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+            mRasterCanvas.setBitmap(glyph);
+            mRasterCanvas.drawText(text, 0, -fmi.top, mRasterPaint);
+            mRasterCanvas.setBitmap(null);
+            mGlyphs.put(text, glyph);
+        }
+        return glyph;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mBackgroundPaint.setAlpha(alpha);
+        mGlyphPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        mBackgroundPaint.setColorFilter(colorFilter);
+        mGlyphPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mSize;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mSize;
+    }
+}
@@ -1,20 +1,93 @@
 package com.dzenm.sidebar;
 
 import android.content.Context;
+import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.database.DataSetObserver;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.drawable.ColorDrawable;
+import android.os.Process;
 import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.widget.ListAdapter;
+import android.widget.ListView;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.dzenm.R;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 public class SideBar extends View {
 
-    private final Paint mPaint = new Paint();
+    /**
+     * 文本的大小, 自动调整时的最大值
+     */
+    private static final float TEXT_SIZE = 36;
+
+    /**
+     * 自动调整时文本大小的最小值
+     */
+    private static final float MIN_TEXT_SIZE = 12;
+
+    /**
+     * 自动调整时文本大小占每一个文本高度和宽度的比例, 留出行间距和选中背景的边距
+     */
+    private static final float TEXT_FIT_RATIO = 0.8f;
+
+    /**
+     * 只显示有item的分组时, 一次改变超过该数量的item在子线程重新计算分组
+     */
+    private static final int MAX_SYNC_ITEM_COUNT = 256;
+
+    /**
+     * 预览的直径和预览到SideBar的距离(px)
+     */
+    private static final int PREVIEW_SIZE = dp2px(64);
+    private static final int PREVIEW_MARGIN = dp2px(16);
+    private static final int PREVIEW_BACKGROUND_COLOR = 0x99000000;
+
+    /**
+     * 计算item分组的线程, 所有的SideBar共用
+     */
+    private static final Executor SECTION_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "SideBar-sections");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * 未选中文本的画笔
+     */
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    /**
+     * 选中文本的画笔
+     */
+    private final Paint mSelectedPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    /**
+     * 选中背景的画笔
+     */
+    private final Paint mSelectedBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
 
     /**
      * 显示滑动的文本内容
@@ -26,6 +99,27 @@ public class SideBar extends View {
             "U", "V", "W", "X", "Y", "Z", "#"
     };
 
+    /**
+     * 每一个文本的高度, 在大小或者文本改变时计算
+     */
+    private int mSingleHeight;
+    /**
+     * 每一个文本的基线
+     */
+    private float[] mBaselines = new float[0];
+    /**
+     * 自动调整文本大小的范围
+     */
+    private float mMinTextSize = MIN_TEXT_SIZE, mMaxTextSize = TEXT_SIZE;
+    /**
+     * 超出第一个和最后一个文本的触摸距离, 在这个范围内选中最近的文本
+     */
+    private int mTouchSlop;
+    /**
+     * 每一个y坐标(加上mTouchSlop)对应的文本位置, 触摸时直接查表, 不需要计算
+     */
+    private short[] mPositionTable = new short[0];
+
     /**
      * 选中的位置
      */
@@ -46,6 +140,65 @@ public class SideBar extends View {
      * 触摸事件
      */
     private OnScrollChangedListener mOnScrollChangedListener;
+    /**
+     * 等待分发的选中位置, 同一帧内多次改变时只分发最后一次, 没有时为-1
+     */
+    private int mPendingPosition = -1;
+    /**
+     * 是否已经提交了下一帧的分发
+     */
+    private boolean isDispatchPosted;
+    /**
+     * 每一帧最多分发一次选中改变, 避免列表跳转的次数超过列表布局的次数
+     */
+    private final Choreographer.FrameCallback mDispatchFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            isDispatchPosted = false;
+            dispatchPendingPosition();
+        }
+    };
+    /**
+     * 抬起时设置的透明背景, 复用同一个对象
+     */
+    private final ColorDrawable mTransparentBackground = new ColorDrawable(Color.TRANSPARENT);
+    /**
+     * 选中文本的预览, 显示在父布局的ViewOverlay中, 没有开启时为null
+     */
+    private SectionPreviewDrawable mPreview;
+    /**
+     * 预览添加到的父布局
+     */
+    private ViewGroup mPreviewHost;
+    /**
+     * 绑定列表的分组索引, 没有绑定列表时为null
+     */
+    private SectionIndex mSectionIndex;
+    /**
+     * 获取列表item的分组
+     */
+    private SectionIndex.SectionKeyProvider mSectionKeyProvider;
+    /**
+     * 绑定的列表
+     */
+    private SectionTarget mSectionTarget;
+    /**
+     * 是否已经监听列表的数据改变, 分离时取消监听, 避免适配器持有SideBar
+     */
+    private boolean isSectionTargetBound;
+    /**
+     * 只显示有item的分组时, 计算分组和获取item的文本
+     */
+    private SectionLabeler mSectionLabeler;
+    private SectionLabeler.ItemTextProvider mItemTextProvider;
+    /**
+     * 子线程重新计算分组的次数, 数据再次改变或者解除绑定后丢弃之前的结果
+     */
+    private int mSectionGeneration;
+    /**
+     * 是否正在子线程重新计算分组
+     */
+    private boolean isSectionRebuildPending;
 
     public SideBar(Context context) {
         this(context, null);
@@ -65,63 +218,431 @@ public class SideBar extends View {
         mUnselectedTextColor = a.getColor(R.styleable.SideBar_unselectedBackgroundColor, Color.RED);
 
         a.recycle();
+
+        mPaint.setTextSize(TEXT_SIZE);
+        mPaint.setTextAlign(Paint.Align.CENTER);
+        mSelectedPaint.setTextSize(TEXT_SIZE);
+        mSelectedPaint.setTextAlign(Paint.Align.CENTER);
+        mSelectedPaint.setFakeBoldText(true);
+        mSelectedBackgroundPaint.setStyle(Paint.Style.FILL);
+        mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        updatePaintColors();
     }
 
+    /**
+     * 设置显示的文本, 只显示有item的分组时, 列表的数据改变后会被替换为有item的分组
+     */
     public void setTexts(String... mTexts) {
         this.mTexts = mTexts;
+        mSelectedPosition = -1;
+        mPendingPosition = -1;
+        hidePreview();
+        if (mSectionTarget != null && !mSectionIndex.isPopulatedOnly()) {
+            mSectionIndex = new SectionIndex(mTexts, mSectionKeyProvider);
+            mSectionIndex.rebuild(mSectionTarget.getItemCount());
+        }
+        computeLayout();
+        invalidate();
     }
 
     public void setSelectedTextColor(int selectedTextColor) {
         this.mSelectedTextColor = selectedTextColor;
+        updatePaintColors();
     }
 
     public void setUnselectedTextColor(int unselectedTextColor) {
         this.mUnselectedTextColor = unselectedTextColor;
+        updatePaintColors();
     }
 
     public void setSelectedBackgroundColor(int selectedBackgroundColor) {
         this.mSelectedBackgroundColor = selectedBackgroundColor;
+        updatePaintColors();
     }
 
     public void setOnScrollChangedListener(OnScrollChangedListener listener) {
         this.mOnScrollChangedListener = listener;
     }
 
+    /**
+     * 设置文本大小的范围, 大小改变时按每一个文本的高度和View的宽度在范围内自动调整
+     *
+     * @param minTextSize 最小的文本大小(px)
+     * @param maxTextSize 最大的文本大小(px)
+     */
+    public void setTextSizeRange(float minTextSize, float maxTextSize) {
+        if (minTextSize <= 0 || maxTextSize < minTextSize) {
+            throw new IllegalArgumentException("Invalid text size range: " + minTextSize + " - " + maxTextSize);
+        }
+        mMinTextSize = minTextSize;
+        mMaxTextSize = maxTextSize;
+        computeLayout();
+        invalidate();
+    }
+
+    /**
+     * @return 自动调整后的文本大小
+     */
+    public float getTextSize() {
+        return mPaint.getTextSize();
+    }
+
+    /**
+     * 设置超出第一个和最后一个文本的触摸距离, 在这个范围内仍然选中最近的文本, 默认为系统的touch slop
+     *
+     * @param touchSlop 触摸距离(px)
+     */
+    public void setTouchSlop(int touchSlop) {
+        mTouchSlop = Math.max(0, touchSlop);
+        computeLayout();
+    }
+
+    /**
+     * 滑动时在SideBar左侧显示选中文本的预览, 预览绘制在父布局的ViewOverlay中, 不需要额外的View
+     *
+     * @param enabled 是否显示预览
+     */
+    public void setPreviewEnabled(boolean enabled) {
+        if (enabled == (mPreview != null)) return;
+        if (enabled) {
+            mPreview = new SectionPreviewDrawable();
+            mPreview.setSize(PREVIEW_SIZE);
+            // 没有设置选中的背景颜色时使用半透明的黑色, 否则预览看不到背景
+            mPreview.setBackgroundColor(Color.alpha(mSelectedBackgroundColor) == 0
+                    ? PREVIEW_BACKGROUND_COLOR : mSelectedBackgroundColor);
+            mPreview.setTextColor(mSelectedTextColor);
+        } else {
+            hidePreview();
+            mPreview.clearGlyphs();
+            mPreview = null;
+        }
+    }
+
+    /**
+     * @param color 预览的背景颜色, 默认与选中的背景颜色一致, 没有设置选中的背景颜色时为半透明的黑色
+     */
+    public void setPreviewBackgroundColor(int color) {
+        if (mPreview != null) mPreview.setBackgroundColor(color);
+    }
+
+    /**
+     * @param color 预览的文本颜色, 默认与选中的文本颜色一致
+     */
+    public void setPreviewTextColor(int color) {
+        if (mPreview != null) mPreview.setTextColor(color);
+    }
+
+    /**
+     * 绑定RecyclerView, 滑动到某个文本时直接滚动到对应分组的第一个item. 分组索引只在绑定时遍历一次,
+     * 之后根据Adapter的插入, 删除和改变通知增量更新. RecyclerView的数据需要按分组排序
+     *
+     * @param recyclerView 绑定的RecyclerView, 需要先设置Adapter, 为null时解除绑定
+     * @param keyProvider  获取item的分组
+     */
+    public void setupWithRecyclerView(RecyclerView recyclerView, SectionIndex.SectionKeyProvider keyProvider) {
+        unbindSection();
+        if (recyclerView == null) return;
+        if (recyclerView.getAdapter() == null) {
+            throw new IllegalStateException("RecyclerView must have an adapter before binding SideBar");
+        }
+        bindSection(new RecyclerViewTarget(recyclerView), keyProvider);
+    }
+
+    /**
+     * 绑定RecyclerView, 显示的文本为列表中有item的分组, 例如联系人的拼音首字母. 绑定和数据整体改变时在子线程计算
+     * 所有item的分组, 插入和删除时只更新受影响的分组. RecyclerView的数据需要按分组排序
+     *
+     * @param recyclerView 绑定的RecyclerView, 需要先设置Adapter, 为null时解除绑定
+     * @param labeler      计算item的分组
+     * @param textProvider 获取item用于分组的文本
+     */
+    public void setupWithRecyclerView(RecyclerView recyclerView, SectionLabeler labeler,
+                                      SectionLabeler.ItemTextProvider textProvider) {
+        unbindSection();
+        if (recyclerView == null) return;
+        if (recyclerView.getAdapter() == null) {
+            throw new IllegalStateException("RecyclerView must have an adapter before binding SideBar");
+        }
+        bindLabeledSection(new RecyclerViewTarget(recyclerView), labeler, textProvider);
+    }
+
+    /**
+     * 绑定ListView, 滑动到某个文本时直接滚动到对应分组的第一个item. ListView的Adapter只有整体改变的通知,
+     * 数据改变时重新创建分组索引. ListView的数据需要按分组排序
+     *
+     * @param listView    绑定的ListView, 需要先设置Adapter, 为null时解除绑定
+     * @param keyProvider 获取item的分组, 位置不包含HeaderView
+     */
+    public void setupWithListView(ListView listView, SectionIndex.SectionKeyProvider keyProvider) {
+        unbindSection();
+        if (listView == null) return;
+        if (listView.getAdapter() == null) {
+            throw new IllegalStateException("ListView must have an adapter before binding SideBar");
+        }
+        bindSection(new ListViewTarget(listView), keyProvider);
+    }
+
+    /**
+     * 绑定ListView, 显示的文本为列表中有item的分组, 数据改变时在子线程重新计算所有item的分组.
+     * ListView的数据需要按分组排序
+     *
+     * @param listView     绑定的ListView, 需要先设置Adapter, 为null时解除绑定
+     * @param labeler      计算item的分组
+     * @param textProvider 获取item用于分组的文本, 位置不包含HeaderView
+     */
+    public void setupWithListView(ListView listView, SectionLabeler labeler,
+                                  SectionLabeler.ItemTextProvider textProvider) {
+        unbindSection();
+        if (listView == null) return;
+        if (listView.getAdapter() == null) {
+            throw new IllegalStateException("ListView must have an adapter before binding SideBar");
+        }
+        bindLabeledSection(new ListViewTarget(listView), labeler, textProvider);
+    }
+
+    /**
+     * @return 绑定列表的分组索引, 没有绑定列表时为null
+     */
+    public SectionIndex getSectionIndex() {
+        return mSectionIndex;
+    }
+
+    private void bindSection(SectionTarget target, SectionIndex.SectionKeyProvider keyProvider) {
+        mSectionKeyProvider = keyProvider;
+        mSectionIndex = new SectionIndex(mTexts, keyProvider);
+        mSectionIndex.rebuild(target.getItemCount());
+        mSectionTarget = target;
+        target.bind();
+        isSectionTargetBound = true;
+    }
+
+    private void bindLabeledSection(SectionTarget target, final SectionLabeler labeler,
+                                    final SectionLabeler.ItemTextProvider textProvider) {
+        mSectionLabeler = labeler;
+        mItemTextProvider = textProvider;
+        // 增量更新时在主线程计算, 分组按文本缓存
+        mSectionKeyProvider = new SectionIndex.SectionKeyProvider() {
+            @Override
+            public String getSectionKey(int position) {
+                return labeler.getLabel(textProvider.getItemText(position));
+            }
+        };
+        mSectionIndex = new SectionIndex(labeler, mSectionKeyProvider);
+        mSectionTarget = target;
+        target.bind();
+        isSectionTargetBound = true;
+        rebuildSectionIndex();
+    }
+
+    private void unbindSection() {
+        if (mSectionTarget != null) {
+            if (isSectionTargetBound) mSectionTarget.unbind();
+            isSectionTargetBound = false;
+            mSectionTarget = null;
+        }
+        mSectionIndex = null;
+        mSectionKeyProvider = null;
+        mSectionLabeler = null;
+        mItemTextProvider = null;
+        mSectionGeneration++;
+        isSectionRebuildPending = false;
+    }
+
+    /**
+     * 列表的数据整体改变时重新创建分组索引. 只显示有item的分组时, 在主线程获取item的文本, 在子线程计算分组
+     */
+    private void rebuildSectionIndex() {
+        if (!mSectionIndex.isPopulatedOnly()) {
+            mSectionIndex.rebuild(mSectionTarget.getItemCount());
+            return;
+        }
+        final int generation = ++mSectionGeneration;
+        final SectionLabeler labeler = mSectionLabeler;
+        final String[] texts = new String[mSectionTarget.getItemCount()];
+        for (int i = 0; i < texts.length; i++) {
+            CharSequence text = mItemTextProvider.getItemText(i);
+            texts[i] = text == null ? null : text.toString();
+        }
+        isSectionRebuildPending = true;
+        SECTION_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final String[] keys = new String[texts.length];
+                for (int i = 0; i < texts.length; i++) {
+                    keys[i] = labeler.getLabel(texts[i]);
+                }
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onSectionKeysComputed(generation, keys);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onSectionKeysComputed(int generation, String[] keys) {
+        if (generation != mSectionGeneration) return;
+        isSectionRebuildPending = false;
+        mSectionIndex.rebuild(keys);
+        applySections();
+    }
+
+    private void onSectionRangeInserted(int positionStart, int itemCount) {
+        if (isRangeRebuildRequired(itemCount)) {
+            rebuildSectionIndex();
+        } else {
+            mSectionIndex.onItemRangeInserted(positionStart, itemCount);
+            applySections();
+        }
+    }
+
+    private void onSectionRangeRemoved(int positionStart, int itemCount) {
+        if (isSectionRebuildPending) {
+            rebuildSectionIndex();
+        } else {
+            // 删除只需要按位置更新数量, 不需要计算分组
+            mSectionIndex.onItemRangeRemoved(positionStart, itemCount);
+            applySections();
+        }
+    }
+
+    private void onSectionRangeChanged(int positionStart, int itemCount) {
+        if (isRangeRebuildRequired(itemCount)) {
+            rebuildSectionIndex();
+        } else {
+            mSectionIndex.onItemRangeChanged(positionStart, itemCount);
+            applySections();
+        }
+    }
+
+    /**
+     * 子线程的计算还没有完成, 或者只显示有item的分组时改变的item太多, 需要重新创建分组索引
+     */
+    private boolean isRangeRebuildRequired(int itemCount) {
+        return isSectionRebuildPending
+                || (mSectionIndex.isPopulatedOnly() && itemCount > MAX_SYNC_ITEM_COUNT);
+    }
+
+    /**
+     * 有item的分组改变时更新显示的文本
+     */
+    private void applySections() {
+        String[] sections = mSectionIndex.getSections();
+        if (sections == mTexts) return;
+        mTexts = sections;
+        mSelectedPosition = -1;
+        mPendingPosition = -1;
+        hidePreview();
+        computeLayout();
+        invalidate();
+    }
+
+    /**
+     * 滚动绑定的列表到分组第一个item的位置
+     *
+     * @param section 分组的位置
+     */
+    private void scrollToSection(int section) {
+        if (mSectionTarget == null) return;
+        int itemCount = mSectionIndex.getItemCount();
+        if (itemCount == 0) return;
+        mSectionTarget.scrollToPosition(Math.min(mSectionIndex.getPositionForSection(section), itemCount - 1));
+    }
+
+    private void updatePaintColors() {
+        mPaint.setColor(mUnselectedTextColor);
+        mSelectedPaint.setColor(mSelectedTextColor);
+        mSelectedBackgroundPaint.setColor(mSelectedBackgroundColor);
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        computeLayout();
+    }
+
+    /**
+     * 大小或者文本改变时计算文本大小, 每一个文本的位置和触摸的查找表, 绘制和触摸时直接使用
+     */
+    private void computeLayout() {
+        int height = getHeight();
+        int count = mTexts.length;
+        mSingleHeight = count == 0 ? 0 : height / count;
+        computeTextSize();
+
+        // 文本在每一行中垂直居中
+        Paint.FontMetrics fm = mPaint.getFontMetrics();
+        float baselineOffset = (mSingleHeight - fm.ascent - fm.descent) / 2;
+        if (mBaselines.length != count) mBaselines = new float[count];
+        for (int i = 0; i < count; i++) {
+            mBaselines[i] = mSingleHeight * i + baselineOffset;
+        }
+        computePositionTable(height, count);
+    }
+
+    /**
+     * 文本大小不超过每一个文本高度和View宽度的一定比例, 并限制在设置的范围内
+     */
+    private void computeTextSize() {
+        float size = mMaxTextSize;
+        if (mSingleHeight > 0) size = Math.min(size, mSingleHeight * TEXT_FIT_RATIO);
+        int width = getWidth();
+        if (width > 0) {
+            // 按最大的大小测量最宽的文本, 文本宽度和大小成正比
+            mPaint.setTextSize(mMaxTextSize);
+            float maxTextWidth = 0;
+            for (String text : mTexts) {
+                maxTextWidth = Math.max(maxTextWidth, mPaint.measureText(text));
+            }
+            if (maxTextWidth > 0) size = Math.min(size, mMaxTextSize * width * TEXT_FIT_RATIO / maxTextWidth);
+        }
+        size = Math.max(mMinTextSize, size);
+        mPaint.setTextSize(size);
+        mSelectedPaint.setTextSize(size);
+    }
+
+    /**
+     * 为每一个y坐标计算对应的文本位置, 包括上下超出mTouchSlop的范围, 最后一行之后剩余的高度属于最后一个文本
+     */
+    private void computePositionTable(int height, int count) {
+        int length = height <= 0 || count == 0 ? 0 : height + mTouchSlop * 2;
+        if (mPositionTable.length != length) mPositionTable = new short[length];
+        for (int y = 0; y < length; y++) {
+            int position = mSingleHeight == 0 ? 0 : (y - mTouchSlop) / mSingleHeight;
+            mPositionTable[y] = (short) Math.max(0, Math.min(position, count - 1));
+        }
+    }
+
+    /**
+     * 查表得到触摸位置对应的文本, 每次触摸的开销与文本数量和View的高度无关
+     *
+     * @param y 触摸的y坐标
+     * @return 文本的位置, 超出上下的触摸范围时为-1
+     */
+    int getPositionForY(float y) {
+        int index = (int) Math.floor(y) + mTouchSlop;
+        if (index < 0 || index >= mPositionTable.length) return -1;
+        return mPositionTable[index];
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        // 获取焦点改变背景颜色.
-        int height = getHeight();                       // 获取对应高度
-        int width = getWidth();                         // 获取对应宽度
-        int singleHeight = height / mTexts.length;      // 获取每一个文本的高度
-
+        // 位置和画笔都已经预先计算, 每一帧只绘制文本
+        float cx = getWidth() >> 1;
         for (int i = 0; i < mTexts.length; i++) {
-            mPaint.setAntiAlias(true);
-            mPaint.setTextSize(36);
-
             // 选中时的状态
             if (i == mSelectedPosition) {
-                mPaint.setColor(mSelectedBackgroundColor);
-                mPaint.setStyle(Paint.Style.FILL);
-                int radius = singleHeight >> 1;
-                int cx = width >> 1;
-                int cy = singleHeight * i + singleHeight * 3 / 4;
-                canvas.drawCircle(cx, cy, radius, mPaint);
-
-                mPaint.setColor(mSelectedTextColor);
-                mPaint.setFakeBoldText(true);
+                int radius = mSingleHeight >> 1;
+                int cy = mSingleHeight * i + radius;
+                canvas.drawCircle(cx, cy, radius, mSelectedBackgroundPaint);
+                canvas.drawText(mTexts[i], cx, mBaselines[i], mSelectedPaint);
             } else {
-                mPaint.setColor(mUnselectedTextColor);
+                canvas.drawText(mTexts[i], cx, mBaselines[i], mPaint);
             }
-
-            // x坐标等于中间-字符串宽度的一半.
-            float xPos = (width >> 1) - mPaint.measureText(mTexts[i]) / 2;
-            float yPos = singleHeight * i + singleHeight;
-            canvas.drawText(mTexts[i], xPos, yPos, mPaint);
-
-            // 重置画笔
-            mPaint.reset();
         }
     }
 
@@ -130,15 +651,21 @@ public class SideBar extends View {
         final int action = event.getAction();
         final int oldSelected = mSelectedPosition;
 
-        // 点击y坐标
-        final float y = event.getY();
-        // 点击y坐标所占总高度的比例*b数组的长度就等于点击b中的个数.
-        final int selectIndex = (int) (y / getHeight() * mTexts.length);
+        // 点击y坐标查表得到点击的文本位置
+        final int selectIndex = getPositionForY(event.getY());
 
-        if (action == MotionEvent.ACTION_UP) {
-            setBackground(new ColorDrawable(0x00000000));
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            // 抬起时立即跳转到最后选中的位置, 取消时丢弃, 然后再通知结束, 避免结束后又收到选中的文本
+            if (action == MotionEvent.ACTION_UP) {
+                dispatchPendingPosition();
+            } else {
+                mPendingPosition = -1;
+            }
+            cancelDispatch();
+            if (getBackground() != mTransparentBackground) setBackground(mTransparentBackground);
+            hidePreview();
             mSelectedPosition = -1;
-            invalidate();
+            if (oldSelected != -1) invalidate();
             if (mOnScrollChangedListener != null) {
                 mOnScrollChangedListener.onScrollChanged(null);
             }
@@ -146,16 +673,254 @@ public class SideBar extends View {
             if (oldSelected != selectIndex
                     && selectIndex >= 0
                     && selectIndex < mTexts.length) {
-                if (mOnScrollChangedListener != null) {
-                    mOnScrollChangedListener.onScrollChanged(mTexts[selectIndex]);
-                }
+                // 选中状态立即重绘, 回调和列表跳转在下一帧分发
                 mSelectedPosition = selectIndex;
+                mPendingPosition = selectIndex;
+                postDispatch();
+                showPreview(selectIndex);
                 invalidate();
             }
         }
         return true;
     }
 
+    /**
+     * 显示预览并移动到选中文本的高度, 只需要重绘父布局的ViewOverlay
+     *
+     * @param position 选中文本的位置
+     */
+    private void showPreview(int position) {
+        if (mPreview == null) return;
+        if (mPreviewHost == null) {
+            ViewParent parent = getParent();
+            if (!(parent instanceof ViewGroup)) return;
+            mPreviewHost = (ViewGroup) parent;
+            mPreviewHost.getOverlay().add(mPreview);
+        }
+        int radius = mPreview.getSize() >> 1;
+        int centerX = getLeft() + (int) getTranslationX() - PREVIEW_MARGIN - radius;
+        int centerY = getTop() + (int) getTranslationY() + getRowTop(position) + (mSingleHeight >> 1);
+        centerY = Math.max(radius, Math.min(centerY, mPreviewHost.getHeight() - radius));
+        mPreview.setText(mTexts[position]);
+        mPreview.moveTo(centerX, centerY);
+    }
+
+    private void hidePreview() {
+        if (mPreviewHost != null) {
+            mPreviewHost.getOverlay().remove(mPreview);
+            mPreviewHost = null;
+        }
+    }
+
+    private void postDispatch() {
+        if (!isDispatchPosted) {
+            isDispatchPosted = true;
+            Choreographer.getInstance().postFrameCallback(mDispatchFrameCallback);
+        }
+    }
+
+    private void cancelDispatch() {
+        if (isDispatchPosted) {
+            isDispatchPosted = false;
+            Choreographer.getInstance().removeFrameCallback(mDispatchFrameCallback);
+        }
+    }
+
+    /**
+     * 分发最后一次选中的位置
+     */
+    private void dispatchPendingPosition() {
+        int position = mPendingPosition;
+        mPendingPosition = -1;
+        if (position < 0 || position >= mTexts.length) return;
+        if (mOnScrollChangedListener != null) {
+            mOnScrollChangedListener.onScrollChanged(mTexts[position]);
+        }
+        scrollToSection(position);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        // 分离期间列表的数据可能已经改变, 重新监听并重新创建分组索引
+        if (mSectionTarget != null && !isSectionTargetBound) {
+            mSectionTarget.bind();
+            isSectionTargetBound = true;
+            rebuildSectionIndex();
+            applySections();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (isSectionTargetBound) {
+            mSectionTarget.unbind();
+            isSectionTargetBound = false;
+        }
+        // 分离时没有抬起事件, 按取消处理, 不会停留在选中状态
+        cancelDispatch();
+        mPendingPosition = -1;
+        hidePreview();
+        if (mSelectedPosition != -1) {
+            mSelectedPosition = -1;
+            if (mOnScrollChangedListener != null) {
+                mOnScrollChangedListener.onScrollChanged(null);
+            }
+        }
+    }
+
+    /**
+     * @param value 需要转换的dp值
+     * @return px值
+     */
+    private static int dp2px(int value) {
+        return (int) TypedValue.applyDimension(
+                TypedValue.COMPLEX_UNIT_DIP,
+                value,
+                Resources.getSystem().getDisplayMetrics()
+        );
+    }
+
+    /**
+     * 绑定的列表
+     */
+    private interface SectionTarget {
+
+        /**
+         * @return 列表item的数量
+         */
+        int getItemCount();
+
+        /**
+         * @param position 滚动到的item位置
+         */
+        void scrollToPosition(int position);
+
+        /**
+         * 监听数据改变
+         */
+        void bind();
+
+        /**
+         * 解除数据改变的监听
+         */
+        void unbind();
+    }
+
+    /**
+     * 绑定的RecyclerView, 数据改变时增量更新分组索引
+     */
+    private class RecyclerViewTarget extends RecyclerView.AdapterDataObserver implements SectionTarget {
+
+        private final RecyclerView mRecyclerView;
+        private final RecyclerView.Adapter<?> mAdapter;
+
+        RecyclerViewTarget(RecyclerView recyclerView) {
+            mRecyclerView = recyclerView;
+            mAdapter = recyclerView.getAdapter();
+        }
+
+        @Override
+        public int getItemCount() {
+            return mAdapter.getItemCount();
+        }
+
+        @Override
+        public void scrollToPosition(int position) {
+            RecyclerView.LayoutManager layoutManager = mRecyclerView.getLayoutManager();
+            if (layoutManager instanceof LinearLayoutManager) {
+                ((LinearLayoutManager) layoutManager).scrollToPositionWithOffset(position, 0);
+            } else {
+                mRecyclerView.scrollToPosition(position);
+            }
+        }
+
+        @Override
+        public void bind() {
+            mAdapter.registerAdapterDataObserver(this);
+        }
+
+        @Override
+        public void unbind() {
+            mAdapter.unregisterAdapterDataObserver(this);
+        }
+
+        @Override
+        public void onChanged() {
+            rebuildSectionIndex();
+            applySections();
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            onSectionRangeChanged(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            onSectionRangeInserted(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            onSectionRangeRemoved(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            // 移动可能跨越分组, 直接重新创建
+            rebuildSectionIndex();
+            applySections();
+        }
+    }
+
+    /**
+     * 绑定的ListView, 数据改变时重新创建分组索引
+     */
+    private class ListViewTarget extends DataSetObserver implements SectionTarget {
+
+        private final ListView mListView;
+        private final ListAdapter mAdapter;
+
+        ListViewTarget(ListView listView) {
+            mListView = listView;
+            mAdapter = listView.getAdapter();
+        }
+
+        @Override
+        public int getItemCount() {
+            return mAdapter.getCount() - mListView.getHeaderViewsCount() - mListView.getFooterViewsCount();
+        }
+
+        @Override
+        public void scrollToPosition(int position) {
+            mListView.setSelection(position + mListView.getHeaderViewsCount());
+        }
+
+        @Override
+        public void bind() {
+            mAdapter.registerDataSetObserver(this);
+        }
+
+        @Override
+        public void unbind() {
+            mAdapter.unregisterDataSetObserver(this);
+        }
+
+        @Override
+        public void onChanged() {
+            rebuildSectionIndex();
+            applySections();
+        }
+
+        @Override
+        public void onInvalidated() {
+            rebuildSectionIndex();
+            applySections();
+        }
+    }
+
     /**
      * 滑动时的监听事件
      */
@@ -0,0 +1,126 @@
+package com.dzenm.sidebar;
+
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SideBar触摸位置的查找和文本大小, 不同高度和文本数量时查找的结果都和文本所在的行一致.
+ * 同时输出27个文本和更多文本时每次查找的耗时, 只用于比较, 不作为判断条件
+ *
+ * @author dzenm
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SideBarHitTest {
+
+    private static final int WIDTH = 80;
+
+    /**
+     * 测试的高度和对应的文本数量
+     */
+    private static final int[] HEIGHTS = {400, 2000, 8000};
+    private static final int[] COUNTS = {10, 100, 1000};
+
+    private static final int TOUCH_SLOP = 24;
+
+    /**
+     * 字母索引的文本数量, 和更多文本时的耗时比较
+     */
+    private static final int LETTER_COUNT = 27;
+
+    /**
+     * 每一轮查找的次数和统计的轮数
+     */
+    private static final int LOOKUPS = 100_000;
+    private static final int ROUNDS = 21;
+
+    private int mSink;
+
+    @Test
+    public void hitTestMatchesRows() {
+        for (int i = 0; i < HEIGHTS.length; i++) {
+            int height = HEIGHTS[i], count = COUNTS[i];
+            SideBar sideBar = newSideBar(height, count);
+            int singleHeight = height / count;
+            for (int y = 0; y < height; y++) {
+                assertEquals(Math.min(y / singleHeight, count - 1), sideBar.getPositionForY(y + 0.5f));
+            }
+            // 超出范围但在touch slop内时选中最近的文本
+            assertEquals(0, sideBar.getPositionForY(-TOUCH_SLOP));
+            assertEquals(count - 1, sideBar.getPositionForY(height + TOUCH_SLOP - 1));
+            assertEquals(-1, sideBar.getPositionForY(-TOUCH_SLOP - 1));
+            assertEquals(-1, sideBar.getPositionForY(height + TOUCH_SLOP));
+        }
+    }
+
+    @Test
+    public void hitTestTime() {
+        for (int i = 0; i < HEIGHTS.length; i++) {
+            report(HEIGHTS[i], LETTER_COUNT);
+            report(HEIGHTS[i], COUNTS[i]);
+        }
+    }
+
+    @Test
+    public void textSizeFitsRows() {
+        SideBar tall = newSideBar(2000, 27);
+        assertEquals(36, tall.getTextSize(), 0.01f);
+
+        SideBar shortBar = newSideBar(400, 27);
+        assertTrue(shortBar.getTextSize() < 36);
+        assertTrue(shortBar.getTextSize() <= 400 / 27);
+    }
+
+    private void report(int height, int count) {
+        SideBar sideBar = newSideBar(height, count);
+        // 第一次用于预热, 第二次统计
+        measureLookups(sideBar, height);
+        long nanos = measureLookups(sideBar, height);
+        System.out.println(String.format(Locale.US, "SideBar hit test height=%-5d count=%-5d %6.2fns",
+                height, count, nanos / (double) LOOKUPS));
+    }
+
+    /**
+     * @return 每一轮LOOKUPS次查找耗时的中位数
+     */
+    private long measureLookups(SideBar sideBar, int height) {
+        long[] rounds = new long[ROUNDS];
+        // 按固定步长反复遍历整个高度
+        float step = height / 997.0f;
+        for (int r = 0; r < ROUNDS; r++) {
+            float y = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                mSink += sideBar.getPositionForY(y);
+                y += step;
+                if (y >= height) y -= height;
+            }
+            rounds[r] = System.nanoTime() - start;
+        }
+        Arrays.sort(rounds);
+        return rounds[ROUNDS / 2];
+    }
+
+    private SideBar newSideBar(int height, int count) {
+        SideBar sideBar = new SideBar(RuntimeEnvironment.getApplication());
+        String[] texts = new String[count];
+        for (int i = 0; i < count; i++) {
+            texts[i] = String.valueOf((char) ('A' + i % 26));
+        }
+        sideBar.setTexts(texts);
+        sideBar.setTouchSlop(TOUCH_SLOP);
+        sideBar.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        sideBar.layout(0, 0, WIDTH, height);
+        return sideBar;
+    }
+}